@@ -15,6 +15,7 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
 
 import java.io.File;
 import java.util.List;
@@ -34,6 +35,10 @@ public class DemoActivity extends AppCompatActivity implements OnClickListener {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // picker uses its own ImageLoader, results are displayed by singleton.
+        if (!ImageLoader.getInstance().isInited()) {
+            ImageLoader.getInstance().init(ImageLoaderConfiguration.createDefault(this));
+        }
         setContentView(R.layout.activity_demo);
         mLinearLayout = (LinearLayout) findViewById(R.id.list_image);
         findViewById(R.id.pick).setOnClickListener(this);
@@ -4,6 +4,9 @@ import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+
 /**
  * Created by TUNGDX on 6/6/2015.
  */
@@ -11,6 +14,10 @@ public class DemoFragmentActivity extends AppCompatActivity {
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // picker uses its own ImageLoader, results are displayed by singleton.
+        if (!ImageLoader.getInstance().isInited()) {
+            ImageLoader.getInstance().init(ImageLoaderConfiguration.createDefault(this));
+        }
         setContentView(R.layout.activity_demo_fragment);
         getSupportFragmentManager().beginTransaction().replace(R.id.container, new DemoFragment()).commit();
     }
@@ -0,0 +1,137 @@
+package vn.tungdx.mediapicker;
+
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.provider.MediaStore.MediaColumns;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.nostra13.universalimageloader.core.DisplayImageOptions;
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.assist.ImageScaleType;
+import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
+import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
+
+import vn.tungdx.mediapicker.imageloader.MediaImageLoaderImpl;
+import vn.tungdx.mediapicker.loader.MediaIndex;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Check allocation of binding rows in {@link MediaAdapter#getView(int, View, android.view.ViewGroup)}
+ * with {@link MediaImageLoaderImpl}. What {@link ImageLoader} itself allocates
+ * is measured by displaying same rows directly with options and aware built
+ * once, bind may only allocate {@link #ALLOCATION_BUDGET} more.
+ */
+public class MediaAdapterBindTest extends AndroidTestCase {
+    private static final int ROWS = 1000;
+    private static final int CELL_SIZE = 120;
+    // at most one object per row, on top of ImageLoader.
+    private static final int ALLOCATION_BUDGET = ROWS;
+
+    private MediaIndex mIndex;
+    private ImageLoader mImageLoader;
+    private MediaAdapter mAdapter;
+    private ImageViewAware mImageAware;
+    private DisplayImageOptions mOptions;
+    private SimpleImageLoadingListener mListener;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        MatrixCursor cursor = new MatrixCursor(new String[]{MediaColumns._ID,
+                MediaColumns.DATE_ADDED}, ROWS);
+        for (long id = 1; id <= ROWS; id++) {
+            cursor.addRow(new Object[]{id, ROWS - id});
+        }
+        mIndex = new MediaIndex().append(cursor, MediaItem.PHOTO, true);
+        cursor.close();
+        MediaImageLoaderImpl loader = new MediaImageLoaderImpl(getContext());
+        // requests are queued but not run, so nothing is decoded while
+        // counting.
+        loader.pause();
+        mImageLoader = loader.getImageLoader();
+        mAdapter = new MediaAdapter(getContext(), mIndex, loader,
+                MediaItem.PHOTO, MediaOptions.createDefault());
+        mAdapter.setItemHeight(CELL_SIZE);
+
+        // same as sized display options of MediaImageLoaderImpl.
+        mOptions = new DisplayImageOptions.Builder().cacheInMemory(true)
+                .showImageOnLoading(R.color.picker_imageloading)
+                .cacheOnDisk(false).considerExifParams(true)
+                .resetViewBeforeLoading(true)
+                .imageScaleType(ImageScaleType.IN_SAMPLE_POWER_OF_2).build();
+        mImageAware = new FixedSizeAware(new ImageView(getContext()),
+                CELL_SIZE);
+        mListener = new SimpleImageLoadingListener();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mImageLoader.resume();
+        mImageLoader.destroy();
+        super.tearDown();
+    }
+
+    public void testBindAllocation() {
+        // warm up: first call inflates view, first display of each uri
+        // creates its lock in ImageLoader.
+        View view = mAdapter.getView(0, null, null);
+        displayDirectly();
+        bind(view);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        displayDirectly();
+        int loaderAllocations = Debug.getThreadAllocCount();
+        Debug.resetThreadAllocCount();
+        bind(view);
+        int bindAllocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        int extra = bindAllocations - loaderAllocations;
+        assertTrue("Binding " + ROWS + " rows allocated " + extra
+                        + " objects more than ImageLoader, budget is "
+                        + ALLOCATION_BUDGET,
+                extra <= ALLOCATION_BUDGET);
+    }
+
+    private void bind(View view) {
+        for (int i = 0; i < ROWS; i++) {
+            mAdapter.getView(i, view, null);
+        }
+    }
+
+    /**
+     * What ImageLoader strictly needs for each row: uri of row and request.
+     */
+    private void displayDirectly() {
+        for (int i = 0; i < ROWS; i++) {
+            mImageLoader.displayImage(
+                    mIndex.getUri(i).toString(), mImageAware, mOptions,
+                    mListener);
+        }
+    }
+
+    private static class FixedSizeAware extends ImageViewAware {
+        private final int mSize;
+
+        FixedSizeAware(ImageView imageView, int size) {
+            super(imageView, false);
+            mSize = size;
+        }
+
+        @Override
+        public int getWidth() {
+            return mSize;
+        }
+
+        @Override
+        public int getHeight() {
+            return mSize;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package vn.tungdx.mediapicker;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView.RecyclerListener;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import java.util.List;
+
+import vn.tungdx.mediapicker.imageloader.MediaImageLoader;
+import vn.tungdx.mediapicker.loader.Album;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Adapter for display album list. First row is all media, its item is null.
+ */
+public class AlbumAdapter extends BaseAdapter implements RecyclerListener {
+    private final Context mContext;
+    private final MediaImageLoader mMediaImageLoader;
+    private final int mCoverSize;
+    private List<Album> mAlbums;
+    private int mTotalCount;
+
+    public AlbumAdapter(Context context, MediaImageLoader mediaImageLoader) {
+        mContext = context;
+        mMediaImageLoader = mediaImageLoader;
+        mCoverSize = context.getResources().getDimensionPixelSize(
+                R.dimen.picker_album_cover_size);
+    }
+
+    /**
+     * @param albums can be null.
+     */
+    public void setAlbums(List<Album> albums) {
+        mAlbums = albums;
+        mTotalCount = 0;
+        if (albums != null) {
+            for (Album album : albums) {
+                mTotalCount += album.getCount();
+            }
+        }
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mAlbums == null || mAlbums.isEmpty() ? 0 : mAlbums.size() + 1;
+    }
+
+    /**
+     * @return {@link Album} at position, null for all media.
+     */
+    @Override
+    public Album getItem(int position) {
+        return position == 0 ? null : mAlbums.get(position - 1);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if (view == null) {
+            view = View.inflate(mContext, R.layout.list_item_album, null);
+            ViewHolder holder = new ViewHolder();
+            holder.cover = (ImageView) view.findViewById(R.id.thumbnail);
+            holder.name = (TextView) view.findViewById(R.id.album_name);
+            holder.count = (TextView) view.findViewById(R.id.album_count);
+            view.setTag(holder);
+        }
+        ViewHolder holder = (ViewHolder) view.getTag();
+        Album album = getItem(position);
+        // albums are ordered by newest media, so cover of all media is cover
+        // of first album.
+        Album cover = album == null ? mAlbums.get(0) : album;
+        int count = album == null ? mTotalCount : album.getCount();
+        holder.name.setText(album == null ? mContext
+                .getString(R.string.picker_all_media) : album.getName());
+        holder.count.setText(mContext.getResources().getQuantityString(
+                R.plurals.picker_album_count, count, count));
+        mMediaImageLoader.displayImage(cover.getCoverUri(), holder.cover,
+                mCoverSize, mCoverSize);
+        return view;
+    }
+
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        Object tag = view.getTag();
+        if (tag instanceof ViewHolder) {
+            mMediaImageLoader.cancelDisplayImage(((ViewHolder) tag).cover);
+        }
+    }
+
+    private static class ViewHolder {
+        ImageView cover;
+        TextView name;
+        TextView count;
+    }
+}
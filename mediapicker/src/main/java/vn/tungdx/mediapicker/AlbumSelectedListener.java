@@ -0,0 +1,17 @@
+package vn.tungdx.mediapicker;
+
+import vn.tungdx.mediapicker.loader.Album;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Listener for select album to browse.
+ */
+public interface AlbumSelectedListener {
+    /**
+     * @param album album selected, null to browse all media.
+     */
+    public void onAlbumSelected(Album album);
+}
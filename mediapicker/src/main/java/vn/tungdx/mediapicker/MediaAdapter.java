@@ -1,20 +1,19 @@
 package vn.tungdx.mediapicker;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.net.Uri;
-import android.support.v4.widget.CursorAdapter;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
+import android.widget.AbsListView;
 import android.widget.AbsListView.RecyclerListener;
+import android.widget.BaseAdapter;
 import android.widget.RelativeLayout;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import vn.tungdx.mediapicker.imageloader.MediaImageLoader;
-import vn.tungdx.mediapicker.utils.MediaUtils;
+import vn.tungdx.mediapicker.loader.MediaIndex;
 import vn.tungdx.mediapicker.widget.PickerImageView;
 
 /**
@@ -22,29 +21,31 @@ import vn.tungdx.mediapicker.widget.PickerImageView;
  */
 
 /**
- * Adapter for display media item list.
+ * Adapter for display media item list. Binds rows of a {@link MediaIndex}, so
+ * no cursor is read while grid scrolls.
  */
-public class MediaAdapter extends CursorAdapter implements RecyclerListener {
+public class MediaAdapter extends BaseAdapter implements RecyclerListener {
+    private final Context mContext;
+    private MediaIndex mMediaIndex;
     private int mMediaType;
     private MediaImageLoader mMediaImageLoader;
-    private List<MediaItem> mMediaListSelected = new ArrayList<MediaItem>();
+    private final MediaSelection mSelection = new MediaSelection();
     private MediaOptions mMediaOptions;
     private int mItemHeight = 0;
     private int mNumColumns = 0;
     private RelativeLayout.LayoutParams mImageViewLayoutParams;
-    private List<PickerImageView> mPickerImageViewSelected = new ArrayList<PickerImageView>();
 
-    public MediaAdapter(Context context, Cursor c, int flags,
+    public MediaAdapter(Context context, MediaIndex mediaIndex,
                         MediaImageLoader mediaImageLoader, int mediaType, MediaOptions mediaOptions) {
-        this(context, c, flags, null, mediaImageLoader, mediaType, mediaOptions);
+        this(context, mediaIndex, null, mediaImageLoader, mediaType, mediaOptions);
     }
 
-    public MediaAdapter(Context context, Cursor c, int flags,
+    public MediaAdapter(Context context, MediaIndex mediaIndex,
                         List<MediaItem> mediaListSelected, MediaImageLoader mediaImageLoader,
                         int mediaType, MediaOptions mediaOptions) {
-        super(context, c, flags);
-        if (mediaListSelected != null)
-            mMediaListSelected = mediaListSelected;
+        mContext = context;
+        mMediaIndex = mediaIndex;
+        mSelection.setItems(mediaListSelected);
         mMediaImageLoader = mediaImageLoader;
         mMediaType = mediaType;
         mMediaOptions = mediaOptions;
@@ -52,27 +53,64 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
                 LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
     }
 
+    /**
+     * Change rows displayed.
+     *
+     * @param mediaIndex can be null.
+     */
+    public void setMediaIndex(MediaIndex mediaIndex) {
+        mMediaIndex = mediaIndex;
+        notifyDataSetChanged();
+    }
+
     @Override
-    public void bindView(View view, Context context, Cursor cursor) {
-        final ViewHolder holder = (ViewHolder) view.getTag();
-        final Uri uri;
-        if (mMediaType == MediaItem.PHOTO) {
-            uri = MediaUtils.getPhotoUri(cursor);
-            holder.thumbnail.setVisibility(View.GONE);
-        } else {
-            uri = MediaUtils.getVideoUri(cursor);
-            holder.thumbnail.setVisibility(View.VISIBLE);
-        }
-        boolean isSelected = isSelected(uri);
-        holder.imageView.setSelected(isSelected);
-        if (isSelected) {
-            mPickerImageViewSelected.add(holder.imageView);
-        }
-        mMediaImageLoader.displayImage(uri, holder.imageView);
+    public int getCount() {
+        return mMediaIndex == null ? 0 : mMediaIndex.getCount();
+    }
+
+    /**
+     * @return {@link MediaItem} of row at position.
+     */
+    @Override
+    public Object getItem(int position) {
+        return mMediaIndex.getItem(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mMediaIndex.getId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
     }
 
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup viewGroup) {
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if (view == null) {
+            view = newView();
+        }
+        bindView(view, position);
+        return view;
+    }
+
+    private void bindView(View view, int position) {
+        final ViewHolder holder = (ViewHolder) view.getTag();
+        final MediaIndex index = mMediaIndex;
+        final int type = index.getType(position);
+        holder.id = index.getId(position);
+        holder.type = type;
+        holder.thumbnail.setVisibility(type == MediaItem.PHOTO ? View.GONE
+                : View.VISIBLE);
+        holder.imageView.setSelected(mSelection.contains(type, holder.id));
+        // cell size known after setItemHeight(), decode thumbnail at that size.
+        mMediaImageLoader.displayImage(index.getUri(position),
+                holder.imageView, mItemHeight, mItemHeight);
+    }
+
+    private View newView() {
         ViewHolder holder = new ViewHolder();
         View root = View
                 .inflate(mContext, R.layout.list_item_mediapicker, null);
@@ -88,13 +126,26 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
         return root;
     }
 
+    /**
+     * @param position position of item in adapter.
+     * @return Uri of media item at position, null if not found.
+     */
+    public Uri getItemUri(int position) {
+        if (position < 0 || position >= getCount())
+            return null;
+        return mMediaIndex.getUri(position);
+    }
+
     private class ViewHolder {
         PickerImageView imageView;
         View thumbnail;
+        // media bound to view.
+        long id;
+        int type;
     }
 
     public boolean hasSelected() {
-        return mMediaListSelected.size() > 0;
+        return mSelection.size() > 0;
     }
 
     /**
@@ -106,11 +157,7 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
     public boolean isSelected(Uri uri) {
         if (uri == null)
             return false;
-        for (MediaItem item : mMediaListSelected) {
-            if (item.getUriOrigin().equals(uri))
-                return true;
-        }
-        return false;
+        return mSelection.contains(mMediaType, uri);
     }
 
     /**
@@ -120,7 +167,7 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
      * @return true if selected, false otherwise.
      */
     public boolean isSelected(MediaItem item) {
-        return mMediaListSelected.contains(item);
+        return mSelection.contains(item);
     }
 
     /**
@@ -130,32 +177,44 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
      */
     public void setMediaSelected(MediaItem item) {
         syncMediaSelectedAsOptions();
-        if (!mMediaListSelected.contains(item))
-            mMediaListSelected.add(item);
+        mSelection.add(item);
     }
 
     /**
      * If item selected then change to unselected and unselected to selected.
+     * Only cells whose state changed are redrawn.
      *
-     * @param item Item to update.
+     * @param item     Item to update.
+     * @param parent   List that displays item.
+     * @param itemView View of item in parent.
      */
-    public void updateMediaSelected(MediaItem item,
-                                    PickerImageView pickerImageView) {
-        if (mMediaListSelected.contains(item)) {
-            mMediaListSelected.remove(item);
-            pickerImageView.setSelected(false);
-            this.mPickerImageViewSelected.remove(pickerImageView);
+    public void updateMediaSelected(MediaItem item, AbsListView parent,
+                                    View itemView) {
+        if (mSelection.remove(item)) {
+            updateSelectedState(itemView);
         } else {
-            boolean value = syncMediaSelectedAsOptions();
-            if (value) {
-                for (PickerImageView picker : this.mPickerImageViewSelected) {
-                    picker.setSelected(false);
+            boolean cleared = syncMediaSelectedAsOptions();
+            mSelection.add(item);
+            if (cleared) {
+                // item unselected can be any visible cell, cell not visible
+                // gets its state on next bind.
+                for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+                    updateSelectedState(parent.getChildAt(i));
                 }
-                this.mPickerImageViewSelected.clear();
+            } else {
+                updateSelectedState(itemView);
             }
-            mMediaListSelected.add(item);
-            pickerImageView.setSelected(true);
-            this.mPickerImageViewSelected.add(pickerImageView);
+        }
+    }
+
+    private void updateSelectedState(View view) {
+        Object tag = view.getTag();
+        // header and its filler views have no holder.
+        if (tag instanceof ViewHolder) {
+            ViewHolder holder = (ViewHolder) tag;
+            // no-op if state not changed, so only changed cells are redrawn.
+            holder.imageView.setSelected(mSelection.contains(holder.type,
+                    holder.id));
         }
     }
 
@@ -163,7 +222,7 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
      * @return List of {@link MediaItem} selected.
      */
     public List<MediaItem> getMediaSelectedList() {
-        return mMediaListSelected;
+        return mSelection.getItems();
     }
 
     /**
@@ -172,7 +231,7 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
      * @param list
      */
     public void setMediaSelectedList(List<MediaItem> list) {
-        mMediaListSelected = list;
+        mSelection.setItems(list);
     }
 
     /**
@@ -184,13 +243,13 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
         switch (mMediaType) {
             case MediaItem.PHOTO:
                 if (!mMediaOptions.canSelectMultiPhoto()) {
-                    mMediaListSelected.clear();
+                    mSelection.clear();
                     return true;
                 }
                 break;
             case MediaItem.VIDEO:
                 if (!mMediaOptions.canSelectMultiVideo()) {
-                    mMediaListSelected.clear();
+                    mSelection.clear();
                     return true;
                 }
 
@@ -219,6 +278,10 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
         return mNumColumns;
     }
 
+    public int getItemHeight() {
+        return mItemHeight;
+    }
+
     // set photo item height
     public void setItemHeight(int height) {
         if (height == mItemHeight) {
@@ -234,10 +297,7 @@ public class MediaAdapter extends CursorAdapter implements RecyclerListener {
     public void onMovedToScrapHeap(View view) {
         PickerImageView imageView = (PickerImageView) view
                 .findViewById(R.id.thumbnail);
-        mPickerImageViewSelected.remove(imageView);
-    }
-
-    public void onDestroyView() {
-        mPickerImageViewSelected.clear();
+        // drop pending decode for cell that scrolled off.
+        mMediaImageLoader.cancelDisplayImage(imageView);
     }
 }
\ No newline at end of file
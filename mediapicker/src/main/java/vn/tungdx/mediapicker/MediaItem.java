@@ -1,13 +1,19 @@
 package vn.tungdx.mediapicker;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.text.TextUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import vn.tungdx.mediapicker.activities.MediaPickerActivity;
+import vn.tungdx.mediapicker.loader.MediaIndex;
 import vn.tungdx.mediapicker.utils.MediaUtils;
 
 /**
@@ -17,6 +23,10 @@ import vn.tungdx.mediapicker.utils.MediaUtils;
 /**
  * Contains information of photo or video that selected and return back in
  * {@link MediaPickerActivity}
+ * <p/>
+ * Item of {@link android.provider.MediaStore} keeps only its id, origin uri is
+ * built when first accessed. In parcel such item is written as type and id,
+ * so a large selection stays small in Intent or Bundle.
  */
 public class MediaItem implements Parcelable {
     public static final int PHOTO = 1;
@@ -24,6 +34,16 @@ public class MediaItem implements Parcelable {
     private int type;
     private Uri uriCropped;
     private Uri uriOrigin;
+    // id of origin in MediaStore, -1 if origin is not a MediaStore uri.
+    private long originId = -1;
+    // details loaded with grid, see MediaOptions.Builder#setRichProjection().
+    private String pathOrigin;
+    private String mimeType;
+    private long size;
+    private long duration;
+    private int width;
+    private int height;
+    private int orientation;
 
     /**
      * @param mediaType Whether {@link #PHOTO} or {@link #VIDEO}
@@ -34,6 +54,16 @@ public class MediaItem implements Parcelable {
         this.uriOrigin = uriOrigin;
     }
 
+    /**
+     * @param mediaType Whether {@link #PHOTO} or {@link #VIDEO}
+     * @param id        id of media in {@link android.provider.MediaStore},
+     *                  origin uri is built from it when needed.
+     */
+    public MediaItem(int mediaType, long id) {
+        this.type = mediaType;
+        this.originId = id;
+    }
+
     /**
      * @return type of media item. Whether {@link #PHOTO} or {@link #VIDEO}
      */
@@ -47,6 +77,9 @@ public class MediaItem implements Parcelable {
      * @param type is {@link #PHOTO} or {@link #VIDEO}
      */
     public void setType(int type) {
+        // uri built from id depends on type.
+        getUriOrigin();
+        originId = -1;
         this.type = type;
     }
 
@@ -59,11 +92,131 @@ public class MediaItem implements Parcelable {
     }
 
     public Uri getUriOrigin() {
+        if (uriOrigin == null && originId >= 0) {
+            uriOrigin = ContentUris.withAppendedId(
+                    MediaIndex.getContentUri(type), originId);
+        }
         return uriOrigin;
     }
 
     public void setUriOrigin(Uri uriOrigin) {
         this.uriOrigin = uriOrigin;
+        this.originId = -1;
+        // path loaded for old uri is no longer valid.
+        this.pathOrigin = null;
+    }
+
+    /**
+     * Set path of origin file, so {@link #getPathOrigin(Context)} doesn't
+     * have to query it.
+     *
+     * @param pathOrigin
+     */
+    public void setPathOrigin(String pathOrigin) {
+        this.pathOrigin = pathOrigin;
+    }
+
+    /**
+     * @return mime type of media, null if not known.
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * @return size of file, in bytes. 0 if not known.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return duration of video, in milliseconds. 0 if not known or photo.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @return width in pixels. 0 if not known.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    /**
+     * @return height in pixels. 0 if not known.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    /**
+     * @return orientation of photo, in degrees. 0 if not known or video.
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    public void setOrientation(int orientation) {
+        this.orientation = orientation;
+    }
+
+    /**
+     * @return id of origin in {@link android.provider.MediaStore}, -1 if
+     * origin is not uri of photo or video there (ex: file uri).
+     */
+    public long getMediaStoreId() {
+        if (originId < 0 && uriOrigin != null) {
+            originId = parseMediaStoreId(type, uriOrigin);
+        }
+        return originId;
+    }
+
+    private static long parseMediaStoreId(int type, Uri uri) {
+        // only uri that getUriOrigin() builds back from id.
+        String base = MediaIndex.getContentUri(type).toString() + "/";
+        String value = uri.toString();
+        if (!value.startsWith(base))
+            return -1;
+        String id = value.substring(base.length());
+        if (id.length() == 0)
+            return -1;
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i)))
+                return -1;
+        }
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean hasDetails() {
+        return pathOrigin != null || mimeType != null || size != 0
+                || duration != 0 || width != 0 || height != 0
+                || orientation != 0;
     }
 
     public boolean isVideo() {
@@ -81,27 +234,116 @@ public class MediaItem implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeInt(this.type);
+        dest.writeByte((byte) this.type);
+        // MediaStore origin is written as id only.
+        long id = getMediaStoreId();
+        dest.writeLong(id);
+        if (id < 0) {
+            dest.writeString(this.uriOrigin == null ? null : this.uriOrigin
+                    .toString());
+        }
         if (this.uriCropped == null) {
             dest.writeString(null);
         } else {
             dest.writeString(this.uriCropped.toString());
         }
-        if (this.uriOrigin == null) {
-            dest.writeString(null);
-        } else {
-            dest.writeString(this.uriOrigin.toString());
+        boolean hasDetails = hasDetails();
+        dest.writeByte((byte) (hasDetails ? 1 : 0));
+        if (hasDetails) {
+            dest.writeString(pathOrigin);
+            dest.writeString(mimeType);
+            dest.writeLong(size);
+            dest.writeLong(duration);
+            dest.writeInt(width);
+            dest.writeInt(height);
+            dest.writeInt(orientation);
         }
     }
 
     public MediaItem(Parcel in) {
-        this.type = in.readInt();
+        this.type = in.readByte();
+        this.originId = in.readLong();
+        if (this.originId < 0) {
+            String origin = in.readString();
+            if (!TextUtils.isEmpty(origin))
+                this.uriOrigin = Uri.parse(origin);
+        }
         String crop = in.readString();
         if (!TextUtils.isEmpty(crop))
             this.uriCropped = Uri.parse(crop);
-        String origin = in.readString();
-        if (!TextUtils.isEmpty(origin))
-            this.uriOrigin = Uri.parse(origin);
+        if (in.readByte() != 0) {
+            this.pathOrigin = in.readString();
+            this.mimeType = in.readString();
+            this.size = in.readLong();
+            this.duration = in.readLong();
+            this.width = in.readInt();
+            this.height = in.readInt();
+            this.orientation = in.readInt();
+        }
+    }
+
+    /**
+     * Write item to stream, same layout as parcel. See {@link MediaResult}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(this.type);
+        long id = getMediaStoreId();
+        out.writeLong(id);
+        if (id < 0) {
+            writeString(out, this.uriOrigin == null ? null : this.uriOrigin
+                    .toString());
+        }
+        writeString(out, this.uriCropped == null ? null : this.uriCropped
+                .toString());
+        boolean hasDetails = hasDetails();
+        out.writeBoolean(hasDetails);
+        if (hasDetails) {
+            writeString(out, pathOrigin);
+            writeString(out, mimeType);
+            out.writeLong(size);
+            out.writeLong(duration);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(orientation);
+        }
+    }
+
+    /**
+     * Read item written by {@link #writeTo(DataOutput)}.
+     */
+    static MediaItem readFrom(DataInput in) throws IOException {
+        int type = in.readByte();
+        MediaItem item = new MediaItem(type, in.readLong());
+        if (item.originId < 0) {
+            String origin = readString(in);
+            if (!TextUtils.isEmpty(origin))
+                item.uriOrigin = Uri.parse(origin);
+        }
+        String crop = readString(in);
+        if (!TextUtils.isEmpty(crop))
+            item.uriCropped = Uri.parse(crop);
+        if (in.readBoolean()) {
+            item.pathOrigin = readString(in);
+            item.mimeType = readString(in);
+            item.size = in.readLong();
+            item.duration = in.readLong();
+            item.width = in.readInt();
+            item.height = in.readInt();
+            item.orientation = in.readInt();
+        }
+        return item;
+    }
+
+    private static void writeString(DataOutput out, String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
     }
 
     public static final Creator<MediaItem> CREATOR = new Creator<MediaItem>() {
@@ -123,8 +365,8 @@ public class MediaItem implements Parcelable {
         int result = 1;
         result = prime * result
                 + ((uriCropped == null) ? 0 : uriCropped.hashCode());
-        result = prime * result
-                + ((uriOrigin == null) ? 0 : uriOrigin.hashCode());
+        Uri origin = getUriOrigin();
+        result = prime * result + ((origin == null) ? 0 : origin.hashCode());
         return result;
     }
 
@@ -142,10 +384,11 @@ public class MediaItem implements Parcelable {
                 return false;
         } else if (!uriCropped.equals(other.uriCropped))
             return false;
-        if (uriOrigin == null) {
-            if (other.uriOrigin != null)
+        Uri origin = getUriOrigin();
+        if (origin == null) {
+            if (other.getUriOrigin() != null)
                 return false;
-        } else if (!uriOrigin.equals(other.uriOrigin))
+        } else if (!origin.equals(other.getUriOrigin()))
             return false;
         return true;
     }
@@ -153,15 +396,18 @@ public class MediaItem implements Parcelable {
     @Override
     public String toString() {
         return "MediaItem [type=" + type + ", uriCropped=" + uriCropped
-                + ", uriOrigin=" + uriOrigin + "]";
+                + ", uriOrigin=" + getUriOrigin() + "]";
     }
 
     /**
      * @param context
-     * @return Path of origin file.
+     * @return Path of origin file. Not queried if loaded with grid or by
+     * {@link MediaUtils#resolvePaths(ContentResolver, java.util.List, boolean)}.
      */
     public String getPathOrigin(Context context) {
-        return getPathFromUri(context, uriOrigin);
+        if (pathOrigin != null)
+            return pathOrigin;
+        return getPathFromUri(context, getUriOrigin());
     }
 
     /**
@@ -53,6 +53,15 @@ public class MediaOptions implements Parcelable {
     private File croppedFile;
     private List<MediaItem> mediaListSelected = new ArrayList<MediaItem>();
     private boolean showWarningVideoDuration;
+    private ThumbnailCachePolicy cachePolicy;
+    private boolean pagedLoading;
+    private boolean richProjection;
+    private boolean albumBrowsing;
+    private long minFileSize;
+    private long maxFileSize;
+    private List<String> mimeTypes;
+    private int resultFileThreshold;
+    private int maxCroppedSize;
 
     public boolean isShowWarningVideoDuration() {
         return showWarningVideoDuration;
@@ -122,6 +131,71 @@ public class MediaOptions implements Parcelable {
         return photoCaptureFile;
     }
 
+    /**
+     * @return Policy of thumbnail cache. Never null.
+     */
+    public ThumbnailCachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * @return true if media are loaded page by page as grid scrolls.
+     */
+    public boolean isPagedLoading() {
+        return pagedLoading;
+    }
+
+    /**
+     * @return true if details of media (path, size, duration...) are loaded
+     * with grid and carried into {@link MediaItem}.
+     */
+    public boolean isRichProjection() {
+        return richProjection;
+    }
+
+    /**
+     * @return true if media can be browsed by album.
+     */
+    public boolean isAlbumBrowsing() {
+        return albumBrowsing;
+    }
+
+    /**
+     * @return min size of media file, in bytes.
+     */
+    public long getMinFileSize() {
+        return minFileSize;
+    }
+
+    /**
+     * @return max size of media file, in bytes.
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * @return mime types of media allowed, null if all are allowed.
+     */
+    public List<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    /**
+     * @return number of items selected above which result is returned
+     * through a file, see {@link MediaResult}.
+     */
+    public int getResultFileThreshold() {
+        return resultFileThreshold;
+    }
+
+    /**
+     * @return max width and height of cropped photo, in pixels. 0 if no limit.
+     */
+    public int getMaxCroppedSize() {
+        return maxCroppedSize;
+    }
+
     private MediaOptions(Builder builder) {
         this.canSelectMultiPhoto = builder.canSelectMultiPhoto;
         this.canSelectMultiVideo = builder.canSelectMultiVideo;
@@ -137,6 +211,15 @@ public class MediaOptions implements Parcelable {
         this.croppedFile = builder.croppedFile;
         this.mediaListSelected = builder.mediaListSelected;
         this.showWarningVideoDuration = builder.showWarningBeforeRecord;
+        this.cachePolicy = builder.cachePolicy;
+        this.pagedLoading = builder.pagedLoading;
+        this.richProjection = builder.richProjection;
+        this.albumBrowsing = builder.albumBrowsing;
+        this.minFileSize = builder.minFileSize;
+        this.maxFileSize = builder.maxFileSize;
+        this.mimeTypes = builder.mimeTypes;
+        this.resultFileThreshold = builder.resultFileThreshold;
+        this.maxCroppedSize = builder.maxCroppedSize;
     }
 
     /**
@@ -173,10 +256,160 @@ public class MediaOptions implements Parcelable {
         private File croppedFile;
         private List<MediaItem> mediaListSelected;
         private boolean showWarningBeforeRecord = false;
+        private ThumbnailCachePolicy cachePolicy = ThumbnailCachePolicy
+                .createDefault();
+        private boolean pagedLoading = true;
+        private boolean richProjection = false;
+        private boolean albumBrowsing = false;
+        private long minFileSize = 0;
+        private long maxFileSize = Long.MAX_VALUE;
+        private List<String> mimeTypes;
+        private int resultFileThreshold = MediaResult.DEFAULT_FILE_THRESHOLD;
+        private int maxCroppedSize = 0;
 
         public Builder() {
         }
 
+        /**
+         * Cropped photo is decoded from region of original file, at full
+         * resolution. Region larger than this size is subsampled (by power of
+         * 2) until it fits.
+         *
+         * @param maxCroppedSize
+         *            max width and height in pixels. Default is 0, no limit.
+         * @throws IllegalArgumentException
+         *             if maxCroppedSize < 0
+         */
+        public Builder setMaxCroppedSize(int maxCroppedSize) {
+            if (maxCroppedSize < 0) {
+                throw new IllegalArgumentException("Size must be >= 0");
+            }
+            this.maxCroppedSize = maxCroppedSize;
+            return this;
+        }
+
+        /**
+         * Return selection larger than threshold through a file in cache dir
+         * instead of Intent, so result never hits size limit of Intent. Then
+         * {@link vn.tungdx.mediapicker.activities.MediaPickerActivity#EXTRA_MEDIA_SELECTED}
+         * is not set, read result by
+         * {@link vn.tungdx.mediapicker.activities.MediaPickerActivity#getMediaItemSelected(android.content.Intent)}
+         * that reads both.
+         *
+         * @param resultFileThreshold
+         *            number of items. Default is
+         *            {@link MediaResult#DEFAULT_FILE_THRESHOLD}, never use
+         *            file. 0 to always use file.
+         * @throws IllegalArgumentException
+         *             if resultFileThreshold < 0
+         */
+        public Builder setResultFileThreshold(int resultFileThreshold) {
+            if (resultFileThreshold < 0) {
+                throw new IllegalArgumentException("Threshold must be >= 0");
+            }
+            this.resultFileThreshold = resultFileThreshold;
+            return this;
+        }
+
+        /**
+         * Only show media whose file is at least this size.
+         *
+         * @param minFileSize
+         *            in bytes. Default is 0.
+         * @throws IllegalArgumentException
+         *             if minFileSize < 0
+         */
+        public Builder setMinFileSize(long minFileSize) {
+            if (minFileSize < 0) {
+                throw new IllegalArgumentException("Min file size must be >= 0");
+            }
+            this.minFileSize = minFileSize;
+            return this;
+        }
+
+        /**
+         * Only show media whose file is at most this size.
+         *
+         * @param maxFileSize
+         *            in bytes. Default is no limit.
+         * @throws IllegalArgumentException
+         *             if maxFileSize <= 0
+         */
+        public Builder setMaxFileSize(long maxFileSize) {
+            if (maxFileSize <= 0) {
+                throw new IllegalArgumentException("Max file size must be > 0");
+            }
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Only show media of these mime types (ex: image/jpeg, video/mp4).
+         *
+         * @param mimeTypes
+         *            Default is null, all mime types.
+         */
+        public Builder setMimeTypes(List<String> mimeTypes) {
+            this.mimeTypes = mimeTypes;
+            return this;
+        }
+
+        /**
+         * Show albums of media in menu, so user can pick from one album
+         * instead of scrolling all media.
+         *
+         * @param albumBrowsing
+         *            Default is false.
+         */
+        public Builder setAlbumBrowsing(boolean albumBrowsing) {
+            this.albumBrowsing = albumBrowsing;
+            return this;
+        }
+
+        /**
+         * Load path, mime type, size, duration, width, height and orientation
+         * of media in grid query and carry them into {@link MediaItem}
+         * returned. Items selected then need no further query (ex:
+         * {@link MediaItem#getPathOrigin(android.content.Context)}), but grid
+         * takes more memory.
+         *
+         * @param richProjection
+         *            Default is false.
+         */
+        public Builder setRichProjection(boolean richProjection) {
+            this.richProjection = richProjection;
+            return this;
+        }
+
+        /**
+         * Load media page by page as grid scrolls, instead of querying all at
+         * once. First page is shown as soon as it's loaded, however large the
+         * library is.
+         *
+         * @param pagedLoading
+         *            Default is true.
+         */
+        public Builder setPagedLoading(boolean pagedLoading) {
+            this.pagedLoading = pagedLoading;
+            return this;
+        }
+
+        /**
+         * Set memory budget of thumbnail cache.
+         *
+         * @param cachePolicy
+         *            Default is {@link ThumbnailCachePolicy#createDefault()}
+         * @throws IllegalArgumentException
+         *             if cachePolicy is null
+         */
+        public Builder setCachePolicy(ThumbnailCachePolicy cachePolicy) {
+            if (cachePolicy == null) {
+                throw new IllegalArgumentException("Cache policy must be not null");
+            }
+            this.cachePolicy = cachePolicy;
+            return this;
+        }
+
         /**
          * Should set this option = true when support multi devices and OS
          * version and set {@link #setMaxVideoDuration(int)} options. (HTC
@@ -417,6 +650,15 @@ public class MediaOptions implements Parcelable {
         dest.writeSerializable(photoCaptureFile);
         dest.writeSerializable(croppedFile);
         dest.writeTypedList(mediaListSelected);
+        dest.writeParcelable(cachePolicy, flags);
+        dest.writeInt(pagedLoading ? 1 : 0);
+        dest.writeInt(richProjection ? 1 : 0);
+        dest.writeInt(albumBrowsing ? 1 : 0);
+        dest.writeLong(minFileSize);
+        dest.writeLong(maxFileSize);
+        dest.writeStringList(mimeTypes);
+        dest.writeInt(resultFileThreshold);
+        dest.writeInt(maxCroppedSize);
     }
 
     public MediaOptions(Parcel in) {
@@ -434,6 +676,16 @@ public class MediaOptions implements Parcelable {
         this.photoCaptureFile = (File) in.readSerializable();
         this.croppedFile = (File) in.readSerializable();
         in.readTypedList(this.mediaListSelected, MediaItem.CREATOR);
+        this.cachePolicy = in.readParcelable(ThumbnailCachePolicy.class
+                .getClassLoader());
+        pagedLoading = in.readInt() == 0 ? false : true;
+        richProjection = in.readInt() == 0 ? false : true;
+        albumBrowsing = in.readInt() == 0 ? false : true;
+        minFileSize = in.readLong();
+        maxFileSize = in.readLong();
+        mimeTypes = in.createStringArrayList();
+        resultFileThreshold = in.readInt();
+        maxCroppedSize = in.readInt();
     }
 
     public static final Creator<MediaOptions> CREATOR = new Creator<MediaOptions>() {
@@ -0,0 +1,138 @@
+package vn.tungdx.mediapicker;
+
+import android.net.Uri;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+
+import vn.tungdx.mediapicker.imageloader.MediaImageLoader;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Prefetch thumbnails of items one to three screens ahead in scroll direction
+ * of grid, so rows that come into screen are already in memory cache. Prefetch
+ * is stopped while flinging and canceled when direction reverses.
+ */
+public class MediaPrefetcher implements OnScrollListener {
+    private static final int DIRECTION_DOWN = 1;
+    private static final int DIRECTION_UP = -1;
+    private static final int MIN_SCREENS_AHEAD = 1;
+    private static final int MAX_SCREENS_AHEAD = 3;
+
+    private final MediaAdapter mMediaAdapter;
+    private final MediaImageLoader mMediaImageLoader;
+    private final int mHeaderRows;
+    private int mScreensAhead = 2;
+
+    private int mScrollState = SCROLL_STATE_IDLE;
+    private int mFirstVisibleItem = -1;
+    private int mVisibleItemCount;
+    private int mDirection = DIRECTION_DOWN;
+    // last adapter position requested in current direction, -1 if none.
+    private int mPrefetchedUntil = -1;
+
+    /**
+     * @param mediaAdapter
+     * @param mediaImageLoader
+     * @param headerRows       number of header rows in grid, positions of grid
+     *                         start after header rows.
+     */
+    public MediaPrefetcher(MediaAdapter mediaAdapter,
+                           MediaImageLoader mediaImageLoader, int headerRows) {
+        mMediaAdapter = mediaAdapter;
+        mMediaImageLoader = mediaImageLoader;
+        mHeaderRows = headerRows;
+    }
+
+    /**
+     * @param screensAhead How many screens ahead to prefetch, from 1 to 3.
+     *                     Default is 2.
+     */
+    public void setScreensAhead(int screensAhead) {
+        mScreensAhead = Math.max(MIN_SCREENS_AHEAD,
+                Math.min(MAX_SCREENS_AHEAD, screensAhead));
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        mScrollState = scrollState;
+        if (scrollState != SCROLL_STATE_FLING) {
+            prefetch();
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem,
+                         int visibleItemCount, int totalItemCount) {
+        if (firstVisibleItem != mFirstVisibleItem) {
+            if (mFirstVisibleItem >= 0) {
+                int direction = firstVisibleItem > mFirstVisibleItem ? DIRECTION_DOWN
+                        : DIRECTION_UP;
+                if (direction != mDirection) {
+                    // items prefetched for other direction are stale now.
+                    mMediaImageLoader.cancelPrefetch();
+                    mPrefetchedUntil = -1;
+                    mDirection = direction;
+                }
+            }
+            mFirstVisibleItem = firstVisibleItem;
+        }
+        mVisibleItemCount = visibleItemCount;
+        if (mScrollState != SCROLL_STATE_FLING) {
+            prefetch();
+        }
+    }
+
+    /**
+     * Cancel prefetch and forget scroll position. Call when data of adapter
+     * changed.
+     */
+    public void reset() {
+        mMediaImageLoader.cancelPrefetch();
+        mFirstVisibleItem = -1;
+        mVisibleItemCount = 0;
+        mDirection = DIRECTION_DOWN;
+        mPrefetchedUntil = -1;
+    }
+
+    private void prefetch() {
+        final int numColumns = mMediaAdapter.getNumColumns();
+        final int size = mMediaAdapter.getItemHeight();
+        final int count = mMediaAdapter.getCount();
+        if (numColumns <= 0 || size <= 0 || mVisibleItemCount <= 0
+                || mFirstVisibleItem < 0 || count <= 0)
+            return;
+        final int headerItems = mHeaderRows * numColumns;
+        final int ahead = mScreensAhead * mVisibleItemCount;
+        final int firstItem = Math.max(0, mFirstVisibleItem - headerItems);
+        final int lastItem = Math.min(count - 1, mFirstVisibleItem
+                + mVisibleItemCount - 1 - headerItems);
+        if (mDirection == DIRECTION_DOWN) {
+            int from = Math.max(lastItem + 1, mPrefetchedUntil + 1);
+            int to = Math.min(count - 1, lastItem + ahead);
+            for (int position = from; position <= to; position++) {
+                prefetch(position, size);
+            }
+            if (to >= from)
+                mPrefetchedUntil = to;
+        } else {
+            int from = mPrefetchedUntil < 0 ? firstItem - 1 : Math.min(
+                    firstItem - 1, mPrefetchedUntil - 1);
+            int to = Math.max(0, firstItem - ahead);
+            for (int position = from; position >= to; position--) {
+                prefetch(position, size);
+            }
+            if (from >= to)
+                mPrefetchedUntil = to;
+        }
+    }
+
+    private void prefetch(int position, int size) {
+        Uri uri = mMediaAdapter.getItemUri(position);
+        if (uri != null) {
+            mMediaImageLoader.prefetchImage(uri, size, size);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package vn.tungdx.mediapicker;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.tungdx.mediapicker.utils.Utils;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Transport of selected {@link MediaItem}s in result Intent. Selection is put
+ * in Intent. Only when {@link MediaOptions#getResultFileThreshold()} is set,
+ * selection larger than it is written to a file in cache dir and only its path
+ * is put in Intent, so result never goes through binder buffer. Picker runs in
+ * app that opens it, so file is private to that app.
+ */
+public class MediaResult {
+    private static final String TAG = "MediaResult";
+    /**
+     * Default of {@link MediaOptions.Builder#setResultFileThreshold(int)},
+     * selection is never written to file.
+     */
+    public static final int DEFAULT_FILE_THRESHOLD = Integer.MAX_VALUE;
+    /**
+     * Intent extra of path of file selection is written to.
+     */
+    public static final String EXTRA_MEDIA_SELECTED_FILE = "extra_media_selected_file";
+    private static final String FILE_PREFIX = "picker_result_";
+    private static final int VERSION = 1;
+
+    private MediaResult() {
+    }
+
+    /**
+     * @param items         selection.
+     * @param fileThreshold number of items above which selection is written to
+     *                      file.
+     * @return true if {@link #put(Context, Intent, String, List, int)} writes
+     * selection to file, so it should be called on background thread.
+     */
+    public static boolean isWrittenToFile(List<MediaItem> items,
+                                          int fileThreshold) {
+        return items != null && items.size() > fileThreshold;
+    }
+
+    /**
+     * Put selection in result Intent. Blocking if selection is written to
+     * file, see {@link #isWrittenToFile(List, int)}.
+     *
+     * @param context
+     * @param data          result Intent.
+     * @param extra         extra of selection when put in Intent.
+     * @param items         selection.
+     * @param fileThreshold number of items above which selection is written to
+     *                      file.
+     */
+    public static void put(Context context, Intent data, String extra,
+                           List<MediaItem> items, int fileThreshold) {
+        if (isWrittenToFile(items, fileThreshold)) {
+            File file = write(context, items);
+            if (file != null) {
+                data.putExtra(EXTRA_MEDIA_SELECTED_FILE, file.getPath());
+                return;
+            }
+        }
+        data.putParcelableArrayListExtra(extra, items == null ? null
+                : new ArrayList<MediaItem>(items));
+    }
+
+    private static File write(Context context, List<MediaItem> items) {
+        File dir = context.getCacheDir();
+        deleteOldFiles(dir);
+        File file = new File(dir, FILE_PREFIX + System.currentTimeMillis());
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            out.writeInt(VERSION);
+            out.writeInt(items.size());
+            for (MediaItem item : items) {
+                item.writeTo(out);
+            }
+            out.close();
+            out = null;
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write result file", e);
+            file.delete();
+            return null;
+        } finally {
+            Utils.closeSilently(out);
+        }
+    }
+
+    /**
+     * Result files not read by caller are deleted on next result.
+     */
+    private static void deleteOldFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (file.getName().startsWith(FILE_PREFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Read all items of selection. Result file, if any, is deleted.
+     *
+     * @param data  result Intent.
+     * @param extra extra of selection when put in Intent.
+     * @return items selected, null if none.
+     */
+    public static ArrayList<MediaItem> get(Intent data, String extra) {
+        Reader reader = open(data, extra);
+        if (reader == null)
+            return null;
+        try {
+            ArrayList<MediaItem> items = new ArrayList<MediaItem>(
+                    reader.size());
+            while (reader.hasNext()) {
+                items.add(reader.next());
+            }
+            return items;
+        } catch (IOException e) {
+            Log.e(TAG, "Can't read result file", e);
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Open selection to read items one by one, without holding all of them.
+     * Reader must be closed, that deletes result file.
+     *
+     * @param data  result Intent.
+     * @param extra extra of selection when put in Intent.
+     * @return reader of selection, null if none.
+     */
+    public static Reader open(Intent data, String extra) {
+        if (data == null)
+            return null;
+        String path = data.getStringExtra(EXTRA_MEDIA_SELECTED_FILE);
+        if (path == null) {
+            List<MediaItem> items = data.getParcelableArrayListExtra(extra);
+            return items == null ? null : new Reader(items);
+        }
+        File file = new File(path);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            if (in.readInt() != VERSION)
+                throw new IOException("Unknown version of result file");
+            Reader reader = new Reader(file, in, in.readInt());
+            in = null;
+            return reader;
+        } catch (IOException e) {
+            Log.e(TAG, "Can't open result file", e);
+            file.delete();
+            return null;
+        } finally {
+            Utils.closeSilently(in);
+        }
+    }
+
+    /**
+     * Reader of selection, from Intent or from result file.
+     */
+    public static class Reader implements Closeable {
+        private final List<MediaItem> mItems;
+        private final File mFile;
+        private final DataInputStream mIn;
+        private final int mSize;
+        private int mPosition;
+
+        private Reader(List<MediaItem> items) {
+            mItems = items;
+            mFile = null;
+            mIn = null;
+            mSize = items.size();
+        }
+
+        private Reader(File file, DataInputStream in, int size) {
+            mItems = null;
+            mFile = file;
+            mIn = in;
+            mSize = size;
+        }
+
+        /**
+         * @return number of items selected.
+         */
+        public int size() {
+            return mSize;
+        }
+
+        public boolean hasNext() {
+            return mPosition < mSize;
+        }
+
+        /**
+         * @return next item selected.
+         * @throws IOException if result file can't be read.
+         */
+        public MediaItem next() throws IOException {
+            if (!hasNext())
+                throw new IllegalStateException("No more item");
+            MediaItem item = mItems != null ? mItems.get(mPosition) : MediaItem
+                    .readFrom(mIn);
+            mPosition++;
+            return item;
+        }
+
+        /**
+         * Close reader and delete result file.
+         */
+        @Override
+        public void close() {
+            Utils.closeSilently(mIn);
+            if (mFile != null) {
+                mFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package vn.tungdx.mediapicker;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.tungdx.mediapicker.utils.LongIntMap;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Selected {@link MediaItem}s, in order of selection. Items are indexed by
+ * media type and id in {@link android.provider.MediaStore}, so checking a grid
+ * cell is O(1) and never compares {@link Uri}.
+ * <p/>
+ * Key of item maps to its position in list of items. Removed item leaves a
+ * hole there, so remove is O(1) too; holes are compacted when list is read or
+ * when they are half of it.
+ */
+public class MediaSelection {
+    private final LongIntMap mPositions = new LongIntMap();
+    // selected items in order, null for removed items until compacted.
+    private final ArrayList<MediaItem> mItems = new ArrayList<MediaItem>();
+    private int mRemoved;
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO} or {@link MediaItem#VIDEO}
+     * @param id        id of media in {@link android.provider.MediaStore}
+     * @return key of media in selection, -1 if id is not valid.
+     */
+    public static long keyOf(int mediaType, long id) {
+        if (id < 0)
+            return -1;
+        return (id << 1) | (mediaType == MediaItem.VIDEO ? 1 : 0);
+    }
+
+    /**
+     * @param item
+     * @return key of item, -1 if its origin uri is not an uri of
+     * {@link android.provider.MediaStore} (ex: file uri).
+     */
+    public static long keyOf(MediaItem item) {
+        // id of item from grid is known without building its uri.
+        long id = item.getMediaStoreId();
+        if (id < 0) {
+            id = idOf(item.getUriOrigin());
+        }
+        return keyOf(item.getType(), id);
+    }
+
+    private static long idOf(Uri uri) {
+        if (uri == null || !MediaStore.AUTHORITY.equals(uri.getAuthority()))
+            return -1;
+        try {
+            return ContentUris.parseId(uri);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO} or {@link MediaItem#VIDEO}
+     * @param id        id of media in {@link android.provider.MediaStore}
+     * @return true if media is selected.
+     */
+    public boolean contains(int mediaType, long id) {
+        long key = keyOf(mediaType, id);
+        return key >= 0 && mPositions.containsKey(key);
+    }
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO} or {@link MediaItem#VIDEO}
+     * @param uri       origin uri of media.
+     * @return true if media is selected.
+     */
+    public boolean contains(int mediaType, Uri uri) {
+        long key = keyOf(mediaType, idOf(uri));
+        if (key >= 0)
+            return mPositions.containsKey(key);
+        for (int i = 0, size = mItems.size(); i < size; i++) {
+            MediaItem item = mItems.get(i);
+            if (item != null && item.getType() == mediaType
+                    && uri.equals(item.getUriOrigin()))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean contains(MediaItem item) {
+        long key = keyOf(item);
+        if (key < 0)
+            return indexOf(item) >= 0;
+        return mPositions.containsKey(key);
+    }
+
+    /**
+     * @param item
+     * @return true if added, false if already selected.
+     */
+    public boolean add(MediaItem item) {
+        long key = keyOf(item);
+        if (key < 0) {
+            if (indexOf(item) >= 0)
+                return false;
+        } else if (mPositions.containsKey(key)) {
+            return false;
+        } else {
+            mPositions.put(key, mItems.size());
+        }
+        mItems.add(item);
+        return true;
+    }
+
+    /**
+     * @param item
+     * @return true if removed, false if not selected.
+     */
+    public boolean remove(MediaItem item) {
+        long key = keyOf(item);
+        int position = key < 0 ? indexOf(item) : mPositions.remove(key, -1);
+        if (position < 0)
+            return false;
+        mItems.set(position, null);
+        mRemoved++;
+        if (mRemoved > mItems.size() / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Items without key are not indexed, they are found by equality.
+     */
+    private int indexOf(MediaItem item) {
+        for (int i = 0, size = mItems.size(); i < size; i++) {
+            if (item.equals(mItems.get(i)))
+                return i;
+        }
+        return -1;
+    }
+
+    private void compact() {
+        if (mRemoved == 0)
+            return;
+        int size = mItems.size();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            MediaItem item = mItems.get(i);
+            if (item == null)
+                continue;
+            mItems.set(count, item);
+            long key = keyOf(item);
+            if (key >= 0) {
+                mPositions.put(key, count);
+            }
+            count++;
+        }
+        mItems.subList(count, size).clear();
+        mRemoved = 0;
+    }
+
+    public void clear() {
+        mPositions.clear();
+        mItems.clear();
+        mRemoved = 0;
+    }
+
+    public int size() {
+        return mItems.size() - mRemoved;
+    }
+
+    /**
+     * @return selected items, in order of selection. List is owned by
+     * selection, don't modify it. O(n) after items were removed, don't call
+     * it for each change.
+     */
+    public ArrayList<MediaItem> getItems() {
+        compact();
+        return mItems;
+    }
+
+    /**
+     * Replace selection by items.
+     *
+     * @param items
+     */
+    public void setItems(List<MediaItem> items) {
+        if (items == mItems)
+            return;
+        clear();
+        if (items == null)
+            return;
+        for (int i = 0, size = items.size(); i < size; i++) {
+            add(items.get(i));
+        }
+    }
+}
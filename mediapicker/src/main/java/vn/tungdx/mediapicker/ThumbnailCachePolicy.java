@@ -0,0 +1,150 @@
+package vn.tungdx.mediapicker;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Defines memory budget of thumbnail cache of media picker. Budget is a
+ * percentage of memory class of device ({@link ActivityManager#getMemoryClass()}),
+ * limited by min and max size. On low RAM devices budget is halved.
+ * <p/>
+ * Set it by {@link MediaOptions.Builder#setCachePolicy(ThumbnailCachePolicy)}.
+ */
+public class ThumbnailCachePolicy implements Parcelable {
+    private static final int MB = 1024 * 1024;
+
+    private int memoryPercentage;
+    private int minSize;
+    private int maxSize;
+
+    private ThumbnailCachePolicy(Builder builder) {
+        this.memoryPercentage = builder.memoryPercentage;
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+    }
+
+    /**
+     * Create default policy: 15% of memory class, from 2MB to 64MB.
+     *
+     * @return
+     */
+    public static ThumbnailCachePolicy createDefault() {
+        return new Builder().build();
+    }
+
+    public int getMemoryPercentage() {
+        return memoryPercentage;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param context
+     * @return size of memory cache for thumbnails on this device, in bytes.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public int getMemoryCacheSize(Context context) {
+        ActivityManager activityManager = (ActivityManager) context
+                .getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClass = (long) activityManager.getMemoryClass() * MB;
+        long size = memoryClass / 100 * memoryPercentage;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && activityManager.isLowRamDevice()) {
+            size /= 2;
+        }
+        size = Math.max(minSize, Math.min(maxSize, size));
+        // never larger than heap can hold.
+        return (int) Math.min(size, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Builder for {@link ThumbnailCachePolicy}
+     */
+    public static class Builder {
+        private int memoryPercentage = 15;
+        private int minSize = 2 * MB;
+        private int maxSize = 64 * MB;
+
+        public Builder() {
+        }
+
+        /**
+         * @param memoryPercentage Percentage of memory class of device. Default
+         *                         is 15.
+         * @throws IllegalArgumentException if memoryPercentage not in (0, 100)
+         */
+        public Builder setMemoryPercentage(int memoryPercentage) {
+            if (memoryPercentage <= 0 || memoryPercentage >= 100) {
+                throw new IllegalArgumentException(
+                        "Memory percentage must be in (0, 100)");
+            }
+            this.memoryPercentage = memoryPercentage;
+            return this;
+        }
+
+        /**
+         * @param minSize in bytes. Default is 2MB.
+         */
+        public Builder setMinSize(int minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * @param maxSize in bytes. Default is 64MB.
+         */
+        public Builder setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public ThumbnailCachePolicy build() {
+            return new ThumbnailCachePolicy(this);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(memoryPercentage);
+        dest.writeInt(minSize);
+        dest.writeInt(maxSize);
+    }
+
+    public ThumbnailCachePolicy(Parcel in) {
+        memoryPercentage = in.readInt();
+        minSize = in.readInt();
+        maxSize = in.readInt();
+    }
+
+    public static final Creator<ThumbnailCachePolicy> CREATOR = new Creator<ThumbnailCachePolicy>() {
+
+        @Override
+        public ThumbnailCachePolicy[] newArray(int size) {
+            return new ThumbnailCachePolicy[size];
+        }
+
+        @Override
+        public ThumbnailCachePolicy createFromParcel(Parcel source) {
+            return new ThumbnailCachePolicy(source);
+        }
+    };
+}
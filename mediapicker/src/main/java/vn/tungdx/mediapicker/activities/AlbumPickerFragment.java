@@ -0,0 +1,117 @@
+package vn.tungdx.mediapicker.activities;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.Loader;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemClickListener;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.List;
+
+import vn.tungdx.mediapicker.AlbumAdapter;
+import vn.tungdx.mediapicker.AlbumSelectedListener;
+import vn.tungdx.mediapicker.MediaOptions;
+import vn.tungdx.mediapicker.R;
+import vn.tungdx.mediapicker.loader.Album;
+import vn.tungdx.mediapicker.loader.AlbumLoader;
+import vn.tungdx.mediapicker.loader.MediaFilter;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Display albums of media, see {@link AlbumLoader}. Album selected is passed
+ * to {@link AlbumSelectedListener}.
+ */
+public class AlbumPickerFragment extends BaseFragment implements
+        LoaderManager.LoaderCallbacks<List<Album>>, OnItemClickListener {
+    private static final String EXTRA_MEDIA_TYPE = "extra_media_type";
+
+    private ListView mListView;
+    private TextView mNoItemView;
+    private AlbumAdapter mAlbumAdapter;
+    private AlbumSelectedListener mAlbumSelectedListener;
+
+    /**
+     * @param mediaType media type of albums, see
+     *                  {@link AlbumLoader}
+     * @param options   options of picker, albums only count media they allow.
+     */
+    public static AlbumPickerFragment newInstance(int mediaType,
+                                                  MediaOptions options) {
+        Bundle bundle = new Bundle();
+        bundle.putInt(EXTRA_MEDIA_TYPE, mediaType);
+        bundle.putParcelable(MediaPickerActivity.EXTRA_MEDIA_OPTIONS, options);
+        AlbumPickerFragment fragment = new AlbumPickerFragment();
+        fragment.setArguments(bundle);
+        return fragment;
+    }
+
+    @Override
+    public void onAttach(Activity activity) {
+        super.onAttach(activity);
+        mAlbumSelectedListener = (AlbumSelectedListener) activity;
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+        View root = inflater.inflate(R.layout.fragment_albumpicker, container,
+                false);
+        mListView = (ListView) root.findViewById(R.id.album_list);
+        mNoItemView = (TextView) root.findViewById(R.id.no_data);
+        mListView.setOnItemClickListener(this);
+        return root;
+    }
+
+    @Override
+    public void onActivityCreated(Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+        mAlbumAdapter = new AlbumAdapter(mContext, mMediaImageLoader);
+        mListView.setAdapter(mAlbumAdapter);
+        mListView.setRecyclerListener(mAlbumAdapter);
+        getLoaderManager().initLoader(0, null, this);
+    }
+
+    @Override
+    public Loader<List<Album>> onCreateLoader(int id, Bundle bundle) {
+        int mediaType = getArguments().getInt(EXTRA_MEDIA_TYPE);
+        MediaOptions options = getArguments().getParcelable(
+                MediaPickerActivity.EXTRA_MEDIA_OPTIONS);
+        MediaFilter filter = MediaFilter.fromOptions(mediaType, options);
+        return new AlbumLoader(mContext, mediaType, filter.getSelection(),
+                filter.getSelectionArgs());
+    }
+
+    @Override
+    public void onLoadFinished(Loader<List<Album>> loader, List<Album> albums) {
+        mAlbumAdapter.setAlbums(albums);
+        if (mAlbumAdapter.getCount() > 0) {
+            mNoItemView.setVisibility(View.GONE);
+            mListView.setVisibility(View.VISIBLE);
+        } else {
+            mNoItemView.setVisibility(View.VISIBLE);
+            mNoItemView.setText(R.string.picker_no_items);
+            mListView.setVisibility(View.GONE);
+        }
+    }
+
+    @Override
+    public void onLoaderReset(Loader<List<Album>> loader) {
+        if (mAlbumAdapter != null)
+            mAlbumAdapter.setAlbums(null);
+    }
+
+    @Override
+    public void onItemClick(AdapterView<?> parent, View view, int position,
+                            long id) {
+        mAlbumSelectedListener.onAlbumSelected(mAlbumAdapter.getItem(position));
+    }
+}
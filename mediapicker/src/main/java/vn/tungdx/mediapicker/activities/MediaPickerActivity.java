@@ -1,6 +1,7 @@
 package vn.tungdx.mediapicker.activities;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import android.content.Intent;
@@ -26,16 +27,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import vn.tungdx.mediapicker.AlbumSelectedListener;
 import vn.tungdx.mediapicker.CropListener;
 import vn.tungdx.mediapicker.MediaItem;
 import vn.tungdx.mediapicker.MediaOptions;
+import vn.tungdx.mediapicker.MediaResult;
 import vn.tungdx.mediapicker.MediaSelectedListener;
 import vn.tungdx.mediapicker.R;
+import vn.tungdx.mediapicker.ThumbnailCachePolicy;
 import vn.tungdx.mediapicker.imageloader.MediaImageLoader;
-import vn.tungdx.mediapicker.imageloader.MediaImageLoaderImpl;
+import vn.tungdx.mediapicker.imageloader.MediaImageLoaderRegistry;
+import vn.tungdx.mediapicker.loader.Album;
 import vn.tungdx.mediapicker.utils.MediaUtils;
 import vn.tungdx.mediapicker.utils.MessageUtils;
 import vn.tungdx.mediapicker.utils.RecursiveFileObserver;
+import vn.tungdx.mediapicker.utils.VideoDurations;
 
 
 /**
@@ -68,7 +74,7 @@ import vn.tungdx.mediapicker.utils.RecursiveFileObserver;
  * </ul>
  */
 public class MediaPickerActivity extends AppCompatActivity implements
-        MediaSelectedListener, CropListener, FragmentManager.OnBackStackChangedListener, FragmentHost {
+        MediaSelectedListener, CropListener, AlbumSelectedListener, FragmentManager.OnBackStackChangedListener, FragmentHost {
     private static final String TAG = "MediaPickerActivity";
 
     public static final String EXTRA_MEDIA_OPTIONS = "extra_media_options";
@@ -77,7 +83,10 @@ public class MediaPickerActivity extends AppCompatActivity implements
      * {@link Activity#onActivityResult(int, int, Intent)} of activity or fragment
      * that open media picker. Always return {@link ArrayList} of
      * {@link MediaItem}. You must always check null and size of this list
-     * before handle your logic.
+     * before handle your logic. If
+     * {@link MediaOptions.Builder#setResultFileThreshold(int)} is set, large
+     * selection is returned through a file instead, so read result by
+     * {@link #getMediaItemSelected(Intent)}.
      */
     public static final String EXTRA_MEDIA_SELECTED = "extra_media_selected";
     private static final int REQUEST_PHOTO_CAPTURE = 100;
@@ -90,11 +99,14 @@ public class MediaPickerActivity extends AppCompatActivity implements
     private MenuItem mPhoto;
     private MenuItem mVideo;
     private MenuItem mDone;
+    private MenuItem mAlbums;
 
     private File mPhotoFileCapture;
     private List<File> mFilesCreatedWhileCapturePhoto;
     private RecursiveFileObserver mFileObserver;
     private FileObserverTask mFileObserverTask;
+    private VideoValidationTask mVideoValidationTask;
+    private ReturnResultTask mReturnResultTask;
 
     /**
      * Start {@link MediaPickerActivity} in {@link Activity} to pick photo or
@@ -192,6 +204,7 @@ public class MediaPickerActivity extends AppCompatActivity implements
         mVideo = menu.findItem(R.id.take_video);
         mMediaSwitcher = menu.findItem(R.id.media_switcher);
         mDone = menu.findItem(R.id.done);
+        mAlbums = menu.findItem(R.id.albums);
         syncActionbar();
         return super.onCreateOptionsMenu(menu);
     }
@@ -201,6 +214,8 @@ public class MediaPickerActivity extends AppCompatActivity implements
         super.onDestroy();
         getSupportFragmentManager().removeOnBackStackChangedListener(this);
         cancelFileObserverTask();
+        cancelVideoValidationTask();
+        cancelReturnResultTask();
         stopWatchingFile();
         mFilesCreatedWhileCapturePhoto = null;
     }
@@ -226,6 +241,13 @@ public class MediaPickerActivity extends AppCompatActivity implements
                 syncIconMenu(mediaPickerFragment.getMediaType());
             }
             return true;
+        } else if (i == R.id.albums) {
+            Fragment activePage = getActivePage();
+            if (activePage instanceof MediaPickerFragment) {
+                showAlbumFragment(((MediaPickerFragment) activePage)
+                        .getAlbumMediaType());
+            }
+            return true;
         } else if (i == R.id.done) {
             Fragment activePage;
             activePage = getActivePage();
@@ -251,7 +273,7 @@ public class MediaPickerActivity extends AppCompatActivity implements
                 } else {
                     // only get 1st item regardless of have many.
                     returnVideo(((MediaPickerFragment) activePage)
-                            .getMediaSelectedList().get(0).getUriOrigin());
+                            .getMediaSelectedList().get(0));
                 }
             }
             return true;
@@ -266,9 +288,16 @@ public class MediaPickerActivity extends AppCompatActivity implements
         outState.putSerializable(KEY_PHOTOFILE_CAPTURE, mPhotoFileCapture);
     }
 
+    /**
+     * @return Loader shared by all picker launches. See
+     * {@link MediaImageLoaderRegistry}
+     */
     @Override
     public MediaImageLoader getImageLoader() {
-        return new MediaImageLoaderImpl(getApplicationContext());
+        // fragments are attached before options restored in onCreate().
+        ThumbnailCachePolicy policy = mMediaOptions != null ? mMediaOptions
+                .getCachePolicy() : null;
+        return MediaImageLoaderRegistry.get(getApplicationContext(), policy);
     }
 
     @Override
@@ -306,6 +335,7 @@ public class MediaPickerActivity extends AppCompatActivity implements
         } else {
             mVideo.setVisible(false);
         }
+        mAlbums.setVisible(mMediaOptions.isAlbumBrowsing());
     }
 
     private void syncIconMenu(int mediaType) {
@@ -322,13 +352,60 @@ public class MediaPickerActivity extends AppCompatActivity implements
     }
 
     private void returnBackData(List<MediaItem> mediaSelectedList) {
+        int threshold = mMediaOptions.getResultFileThreshold();
+        if (MediaResult.isWrittenToFile(mediaSelectedList, threshold)) {
+            // writing file of large selection must not block UI thread.
+            cancelReturnResultTask();
+            mReturnResultTask = new ReturnResultTask(mediaSelectedList);
+            mReturnResultTask.execute();
+            return;
+        }
         Intent data = new Intent();
-        data.putParcelableArrayListExtra(EXTRA_MEDIA_SELECTED,
-                (ArrayList<MediaItem>) mediaSelectedList);
+        MediaResult.put(this, data, EXTRA_MEDIA_SELECTED, mediaSelectedList,
+                threshold);
+        finishWithResult(data);
+    }
+
+    private void finishWithResult(Intent data) {
         setResult(Activity.RESULT_OK, data);
         finish();
     }
 
+    private void cancelReturnResultTask() {
+        if (mReturnResultTask != null) {
+            mReturnResultTask.cancel(true);
+            mReturnResultTask = null;
+        }
+    }
+
+    private class ReturnResultTask extends AsyncTask<Void, Void, Intent> {
+        private final List<MediaItem> mItems;
+        private final Context mContext;
+        private final int mThreshold;
+
+        ReturnResultTask(List<MediaItem> items) {
+            mItems = new ArrayList<MediaItem>(items);
+            mContext = getApplicationContext();
+            mThreshold = mMediaOptions.getResultFileThreshold();
+        }
+
+        @Override
+        protected Intent doInBackground(Void... params) {
+            Intent data = new Intent();
+            MediaResult.put(mContext, data, EXTRA_MEDIA_SELECTED, mItems,
+                    mThreshold);
+            return data;
+        }
+
+        @Override
+        protected void onPostExecute(Intent data) {
+            mReturnResultTask = null;
+            if (!isFinishing()) {
+                finishWithResult(data);
+            }
+        }
+    }
+
     private void takePhoto() {
         Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         if (takePictureIntent.resolveActivity(getPackageManager()) != null) {
@@ -464,6 +541,26 @@ public class MediaPickerActivity extends AppCompatActivity implements
         transaction.commit();
     }
 
+    private void showAlbumFragment(int mediaType) {
+        Fragment fragment = AlbumPickerFragment.newInstance(mediaType,
+                mMediaOptions);
+        FragmentTransaction transaction = getSupportFragmentManager()
+                .beginTransaction();
+        transaction.replace(R.id.container, fragment);
+        transaction.setTransition(FragmentTransaction.TRANSIT_FRAGMENT_OPEN);
+        transaction.addToBackStack(null);
+        transaction.commit();
+    }
+
+    @Override
+    public void onAlbumSelected(Album album) {
+        getSupportFragmentManager().popBackStackImmediate();
+        Fragment activePage = getActivePage();
+        if (activePage instanceof MediaPickerFragment) {
+            ((MediaPickerFragment) activePage).setAlbum(album);
+        }
+    }
+
     @Override
     public void onSuccess(MediaItem mediaItem) {
         List<MediaItem> list = new ArrayList<MediaItem>();
@@ -487,6 +584,9 @@ public class MediaPickerActivity extends AppCompatActivity implements
         if (fragment instanceof PhotoCropFragment) {
             hideAllOptionsMenu();
             getSupportActionBar().hide();
+        } else if (fragment instanceof AlbumPickerFragment) {
+            hideAllOptionsMenu();
+            getSupportActionBar().show();
         } else if (fragment instanceof MediaPickerFragment) {
             getSupportActionBar().show();
             syncMediaOptions();
@@ -513,31 +613,22 @@ public class MediaPickerActivity extends AppCompatActivity implements
             mMediaSwitcher.setVisible(false);
         if (mDone != null)
             mDone.setVisible(false);
+        if (mAlbums != null)
+            mAlbums.setVisible(false);
     }
 
     /**
      * Check video duration valid or not with options.
      *
-     * @param videoUri
+     * @param video
+     * @param duration duration of video, in milliseconds.
      * @return 1 if valid, otherwise is invalid. -2: not found, 0 larger than
      * accepted, -1 smaller than accepted.
      */
-    private int checkValidVideo(Uri videoUri) {
+    private int checkValidVideo(MediaItem video, long duration) {
+        Uri videoUri = video.getUriOrigin();
         if (videoUri == null)
             return -2;
-        // try get duration using MediaPlayer. (Should get duration using
-        // MediaPlayer before use Uri because some devices can get duration by
-        // Uri or not exactly. Ex: Asus Memo Pad8)
-        long duration = MediaUtils.getDuration(getApplicationContext(),
-                MediaUtils.getRealVideoPathFromURI(getContentResolver(), videoUri));
-        if (duration == 0) {
-            // try get duration one more, by uri of video. Note: Some time can
-            // not get duration by Uri after record video.(It's usually happen
-            // in HTC
-            // devices 2.3, maybe others)
-            duration = MediaUtils
-                    .getDuration(getApplicationContext(), videoUri);
-        }
         // accept delta about < 1000 milliseconds. (ex: 10769 is still accepted
         // if limit is 10000)
         if (mMediaOptions.getMaxVideoDuration() != Integer.MAX_VALUE
@@ -551,7 +642,24 @@ public class MediaPickerActivity extends AppCompatActivity implements
     }
 
     private void returnVideo(Uri videoUri) {
-        final int code = checkValidVideo(videoUri);
+        returnVideo(new MediaItem(MediaItem.VIDEO, videoUri));
+    }
+
+    /**
+     * Check duration of video and return it if valid. Duration is read on
+     * background thread, unless it's loaded with grid.
+     */
+    private void returnVideo(MediaItem video) {
+        cancelVideoValidationTask();
+        if (video.getDuration() > 0 || video.getUriOrigin() == null) {
+            onVideoValidated(video, checkValidVideo(video, video.getDuration()));
+            return;
+        }
+        mVideoValidationTask = new VideoValidationTask(video);
+        mVideoValidationTask.execute();
+    }
+
+    private void onVideoValidated(MediaItem video, int code) {
         switch (code) {
             // not found. should never happen. Do nothing when happen.
             case -2:
@@ -576,9 +684,8 @@ public class MediaPickerActivity extends AppCompatActivity implements
                 break;
             // ok
             case 1:
-                MediaItem item = new MediaItem(MediaItem.VIDEO, videoUri);
                 ArrayList<MediaItem> list = new ArrayList<MediaItem>();
-                list.add(item);
+                list.add(video);
                 returnBackData(list);
                 break;
 
@@ -590,7 +697,40 @@ public class MediaPickerActivity extends AppCompatActivity implements
     private void showVideoInvalid(String msg) {
         MediaPickerErrorDialog errorDialog = MediaPickerErrorDialog
                 .newInstance(msg);
-        errorDialog.show(getSupportFragmentManager(), null);
+        // video may be validated after state saved.
+        getSupportFragmentManager().beginTransaction().add(errorDialog, null)
+                .commitAllowingStateLoss();
+    }
+
+    private void cancelVideoValidationTask() {
+        if (mVideoValidationTask != null) {
+            mVideoValidationTask.cancel(true);
+            mVideoValidationTask = null;
+        }
+    }
+
+    private class VideoValidationTask extends AsyncTask<Void, Void, Integer> {
+        private final MediaItem mVideo;
+        private final Context mContext;
+
+        VideoValidationTask(MediaItem video) {
+            mVideo = video;
+            mContext = getApplicationContext();
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            long duration = VideoDurations.getDuration(mContext, mVideo);
+            return checkValidVideo(mVideo, duration);
+        }
+
+        @Override
+        protected void onPostExecute(Integer code) {
+            mVideoValidationTask = null;
+            if (!isFinishing()) {
+                onVideoValidated(mVideo, code);
+            }
+        }
     }
 
     /**
@@ -604,11 +744,20 @@ public class MediaPickerActivity extends AppCompatActivity implements
      * always check null and size of this list before handle your logic.
      */
     public static ArrayList<MediaItem> getMediaItemSelected(Intent intent) {
-        if (intent == null)
-            return null;
-        ArrayList<MediaItem> mediaItemList = intent
-                .getParcelableArrayListExtra(MediaPickerActivity.EXTRA_MEDIA_SELECTED);
-        return mediaItemList;
+        return MediaResult.get(intent, EXTRA_MEDIA_SELECTED);
+    }
+
+    /**
+     * Read media selected one by one, so large selection is never held in
+     * memory at once. Use instead of {@link #getMediaItemSelected(Intent)},
+     * and close reader after.
+     *
+     * @param intent In {@link Activity#onActivityResult(int, int, Intent)} method of
+     *               activity or fragment that open media picker.
+     * @return reader of media selected, null if none.
+     */
+    public static MediaResult.Reader openMediaItemSelected(Intent intent) {
+        return MediaResult.open(intent, EXTRA_MEDIA_SELECTED);
     }
 
     private class FileObserverTask extends AsyncTask<Void, Void, Void> {
@@ -1,38 +1,46 @@
 package vn.tungdx.mediapicker.activities;
 
 import android.app.Activity;
-import android.database.Cursor;
-import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Images;
-import android.provider.MediaStore.MediaColumns;
-import android.provider.MediaStore.Video;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.text.TextUtils;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
 import android.widget.AbsListView.LayoutParams;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.TextView;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import vn.tungdx.mediapicker.MediaAdapter;
 import vn.tungdx.mediapicker.MediaItem;
 import vn.tungdx.mediapicker.MediaOptions;
+import vn.tungdx.mediapicker.MediaPrefetcher;
 import vn.tungdx.mediapicker.MediaSelectedListener;
 import vn.tungdx.mediapicker.R;
-import vn.tungdx.mediapicker.utils.MediaUtils;
+import vn.tungdx.mediapicker.imageloader.ScrollLoadScheduler;
+import vn.tungdx.mediapicker.loader.Album;
+import vn.tungdx.mediapicker.loader.GridSnapshot;
+import vn.tungdx.mediapicker.loader.MediaFilter;
+import vn.tungdx.mediapicker.loader.MediaIndex;
+import vn.tungdx.mediapicker.loader.MediaIndexLoader;
 import vn.tungdx.mediapicker.utils.Utils;
 import vn.tungdx.mediapicker.widget.HeaderGridView;
-import vn.tungdx.mediapicker.widget.PickerImageView;
 
 
 /**
@@ -45,12 +53,14 @@ import vn.tungdx.mediapicker.widget.PickerImageView;
  * picker.
  */
 public class MediaPickerFragment extends BaseFragment implements
-        LoaderManager.LoaderCallbacks<Cursor>, OnItemClickListener {
-    private static final String LOADER_EXTRA_URI = "loader_extra_uri";
-    private static final String LOADER_EXTRA_PROJECT = "loader_extra_project";
+        LoaderManager.LoaderCallbacks<MediaIndex>, OnItemClickListener,
+        OnScrollListener {
     private static final String KEY_MEDIA_TYPE = "media_type";
     private static final String KEY_GRID_STATE = "grid_state";
     private static final String KEY_MEDIA_SELECTED_LIST = "media_selected_list";
+    private static final String KEY_BUCKET_ID = "bucket_id";
+    private static final String BUCKET_SELECTION = Images.ImageColumns.BUCKET_ID
+            + " = ?";
 
     private HeaderGridView mGridView;
     private TextView mNoItemView;
@@ -59,8 +69,16 @@ public class MediaPickerFragment extends BaseFragment implements
     private MediaSelectedListener mMediaSelectedListener;
     private Bundle mSavedInstanceState;
     private List<MediaItem> mMediaSelectedList;
+    private ScrollLoadScheduler mScrollLoadScheduler;
+    private MediaPrefetcher mMediaPrefetcher;
+    // index delivered by each loader, loader id is media type it loads.
+    private final SparseArray<MediaIndex> mMediaIndexes = new SparseArray<MediaIndex>();
+    // shown until loader delivers, not saved again.
+    private MediaIndex mSnapshot;
 
     private int mMediaType;
+    // bucket id of album browsed, null for all media.
+    private String mBucketId;
     private int mPhotoSize, mPhotoSpacing;
 
     public MediaPickerFragment() {
@@ -90,6 +108,7 @@ public class MediaPickerFragment extends BaseFragment implements
             mMediaType = savedInstanceState.getInt(KEY_MEDIA_TYPE);
             mMediaSelectedList = savedInstanceState
                     .getParcelableArrayList(KEY_MEDIA_SELECTED_LIST);
+            mBucketId = savedInstanceState.getString(KEY_BUCKET_ID);
             mSavedInstanceState = savedInstanceState;
         } else {
             mMediaOptions = getArguments().getParcelable(
@@ -125,77 +144,145 @@ public class MediaPickerFragment extends BaseFragment implements
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        if (mMediaType == MediaItem.PHOTO) {
-            requestPhotos(false);
-        } else {
-            requestVideos(false);
+        int loaderId = getLoaderId();
+        if (mMediaIndexes.get(loaderId) == null
+                && getLoaderManager().getLoader(loaderId) == null) {
+            showSnapshot(loaderId);
         }
+        requestMedia(loaderId);
     }
 
-    private void requestPhotos(boolean isRestart) {
-        requestMedia(Images.Media.EXTERNAL_CONTENT_URI,
-                MediaUtils.PROJECT_PHOTO, isRestart);
+    /**
+     * Show rows saved when picker was closed, until query returns.
+     */
+    private void showSnapshot(int loaderId) {
+        mSnapshot = GridSnapshot.read(GridSnapshot.getFile(mContext),
+                getSnapshotKey(loaderId));
+        if (mSnapshot != null) {
+            mMediaIndexes.put(loaderId, mSnapshot);
+            bindData(getFilteredIndex());
+        }
     }
 
-    private void requestVideos(boolean isRestart) {
-        requestMedia(Video.Media.EXTERNAL_CONTENT_URI,
-                MediaUtils.PROJECT_VIDEO, isRestart);
+    @Override
+    public void onStop() {
+        super.onStop();
+        MediaIndex index = mMediaIndexes.get(getLoaderId());
+        if (index != null && index != mSnapshot) {
+            new SaveSnapshotTask(GridSnapshot.getFile(mContext),
+                    getSnapshotKey(getLoaderId()), index).execute();
+        }
     }
 
-    private void requestMedia(Uri uri, String[] projects, boolean isRestart) {
-        Bundle bundle = new Bundle();
-        bundle.putStringArray(LOADER_EXTRA_PROJECT, projects);
-        bundle.putString(LOADER_EXTRA_URI, uri.toString());
-        if (isRestart)
-            getLoaderManager().restartLoader(0, bundle, this);
-        else
-            getLoaderManager().initLoader(0, bundle, this);
+    private String getSnapshotKey(int loaderId) {
+        MediaFilter filter = getFilter(loaderId);
+        return loaderId + " " + filter.getSelection() + " "
+                + Arrays.toString(filter.getSelectionArgs());
+    }
+
+    /**
+     * Start loader of media type if not started yet. Started loaders are kept
+     * alive, so switching back to media type doesn't query it again.
+     *
+     * @param loaderId media type to load, see {@link #getLoaderId()}
+     */
+    private void requestMedia(int loaderId) {
+        getLoaderManager().initLoader(loaderId, null, this);
+    }
+
+    /**
+     * @return id of loader of current media type. It's the media type loader
+     * loads: {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     * {@link MediaIndex#PHOTO_AND_VIDEO} in mixed loading.
+     */
+    private int getLoaderId() {
+        return isMixedLoading() ? MediaIndex.PHOTO_AND_VIDEO : mMediaType;
+    }
+
+    /**
+     * Photos and videos are loaded by one query and switching between them
+     * only filters loaded index. Files table is API 11+, before that each
+     * media type is loaded by its own query.
+     */
+    private boolean isMixedLoading() {
+        return mMediaOptions.canSelectPhotoAndVideo()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    private void loadNextPage() {
+        Loader<MediaIndex> loader = getLoaderManager().getLoader(getLoaderId());
+        if (loader instanceof MediaIndexLoader) {
+            ((MediaIndexLoader) loader).loadNextPage();
+        }
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        if (mGridView != null) {
-            mSavedInstanceState.putParcelable(KEY_GRID_STATE,
-                    mGridView.onSaveInstanceState());
-        }
+        saveGridState();
         mSavedInstanceState.putParcelable(
                 MediaPickerActivity.EXTRA_MEDIA_OPTIONS, mMediaOptions);
         mSavedInstanceState.putInt(KEY_MEDIA_TYPE, mMediaType);
+        mSavedInstanceState.putString(KEY_BUCKET_ID, mBucketId);
         mSavedInstanceState.putParcelableArrayList(KEY_MEDIA_SELECTED_LIST,
-                (ArrayList<MediaItem>) mMediaSelectedList);
+                (ArrayList<MediaItem>) getMediaSelectedList());
         outState.putAll(mSavedInstanceState);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle bundle) {
-        Uri uri = Uri.parse(bundle.getString(LOADER_EXTRA_URI));
-        String[] projects = bundle.getStringArray(LOADER_EXTRA_PROJECT);
-        String order = MediaColumns.DATE_ADDED + " DESC";
-        return new CursorLoader(mContext, uri, projects, null, null, order);
+    public Loader<MediaIndex> onCreateLoader(int id, Bundle bundle) {
+        int mediaType = id;
+        int pageSize = mMediaOptions.isPagedLoading() ? MediaIndexLoader.DEFAULT_PAGE_SIZE
+                : 0;
+        MediaFilter filter = getFilter(mediaType);
+        return new MediaIndexLoader(mContext, mediaType,
+                filter.getSelection(), filter.getSelectionArgs(), pageSize,
+                mMediaOptions.isRichProjection());
     }
 
-    private void bindData(Cursor cursor) {
-        if (cursor == null || cursor.getCount() <= 0) {
+    private MediaFilter getFilter(int mediaType) {
+        MediaFilter filter = MediaFilter.fromOptions(mediaType, mMediaOptions);
+        if (mBucketId != null) {
+            // only rows of album are queried.
+            filter.add(BUCKET_SELECTION, mBucketId);
+        }
+        return filter;
+    }
+
+    private void bindData(MediaIndex index) {
+        if (index == null || index.getCount() <= 0) {
+            if (index != null && !index.isComplete()) {
+                // media of this type may be in next pages.
+                if (mMediaAdapter != null)
+                    mMediaAdapter.setMediaIndex(index);
+                loadNextPage();
+                return;
+            }
             switchToError();
             return;
         }
         switchToData();
         if (mMediaAdapter == null) {
-            mMediaAdapter = new MediaAdapter(mContext, cursor, 0,
+            mMediaAdapter = new MediaAdapter(mContext, index,
                     mMediaImageLoader, mMediaType, mMediaOptions);
         } else {
             mMediaAdapter.setMediaType(mMediaType);
-            mMediaAdapter.swapCursor(cursor);
+            mMediaAdapter.setMediaIndex(index);
         }
         if (mGridView.getAdapter() == null) {
             mGridView.setAdapter(mMediaAdapter);
             mGridView.setRecyclerListener(mMediaAdapter);
         }
-        Parcelable state = mSavedInstanceState.getParcelable(KEY_GRID_STATE);
-        if (state != null) {
-            mGridView.onRestoreInstanceState(state);
+        if (mMediaPrefetcher == null) {
+            mMediaPrefetcher = new MediaPrefetcher(mMediaAdapter,
+                    mMediaImageLoader, mGridView.getHeaderViewCount());
+            mScrollLoadScheduler = new ScrollLoadScheduler(mMediaImageLoader,
+                    this);
+            mGridView.setOnScrollListener(mScrollLoadScheduler);
+        } else {
+            mMediaPrefetcher.reset();
         }
+        restoreGridState();
         if (mMediaSelectedList != null) {
             mMediaAdapter.setMediaSelectedList(mMediaSelectedList);
         }
@@ -203,38 +290,107 @@ public class MediaPickerFragment extends BaseFragment implements
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        bindData(cursor);
+    public void onLoadFinished(Loader<MediaIndex> loader, MediaIndex index) {
+        if (mMediaIndexes.get(loader.getId()) == mSnapshot) {
+            // rows of query replace snapshot.
+            mSnapshot = null;
+        }
+        mMediaIndexes.put(loader.getId(), index);
+        if (loader.getId() != getLoaderId())
+            return;
+        bindData(getFilteredIndex());
+        if (mMediaOptions.canSelectPhotoAndVideo() && !isMixedLoading()) {
+            // prefetch other media type, so switching to it is instant.
+            requestMedia(mMediaType == MediaItem.PHOTO ? MediaItem.VIDEO
+                    : MediaItem.PHOTO);
+        }
+    }
+
+    private boolean isShowingSnapshot() {
+        return mSnapshot != null
+                && mMediaIndexes.get(getLoaderId()) == mSnapshot;
+    }
+
+    private MediaIndex getFilteredIndex() {
+        MediaIndex index = mMediaIndexes.get(getLoaderId());
+        if (index == null || !isMixedLoading())
+            return index;
+        return index.filter(mMediaType);
+    }
+
+    private String getGridStateKey(int mediaType) {
+        return KEY_GRID_STATE + "_" + mediaType;
+    }
+
+    /**
+     * Save grid position of current media type.
+     */
+    private void saveGridState() {
+        if (mGridView != null) {
+            mSavedInstanceState.putParcelable(getGridStateKey(mMediaType),
+                    mGridView.onSaveInstanceState());
+        }
+    }
+
+    private void restoreGridState() {
+        String key = getGridStateKey(mMediaType);
+        Parcelable state = mSavedInstanceState.getParcelable(key);
+        if (state != null) {
+            mGridView.onRestoreInstanceState(state);
+            // restore once, not again when next page is loaded.
+            mSavedInstanceState.remove(key);
+        }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<MediaIndex> loader) {
         // Preference:http://developer.android.com/guide/components/loaders.html#callback
-        if (mMediaAdapter != null)
-            mMediaAdapter.swapCursor(null);
+        mMediaIndexes.remove(loader.getId());
+        if (mMediaAdapter != null && loader.getId() == getLoaderId())
+            mMediaAdapter.setMediaIndex(null);
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (mMediaPrefetcher != null)
+            mMediaPrefetcher.onScrollStateChanged(view, scrollState);
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem,
+                         int visibleItemCount, int totalItemCount) {
+        if (mMediaPrefetcher != null)
+            mMediaPrefetcher.onScroll(view, firstVisibleItem,
+                    visibleItemCount, totalItemCount);
+        // load next page one screen before end of grid.
+        if (visibleItemCount > 0
+                && firstVisibleItem + 2 * visibleItemCount >= totalItemCount) {
+            loadNextPage();
+        }
     }
 
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position,
                             long id) {
+        if (isShowingSnapshot()) {
+            // rows of snapshot may be deleted since saved, they can't be
+            // selected until query returns.
+            return;
+        }
         Object object = parent.getAdapter().getItem(position);
-        if (object instanceof Cursor) {
-            Uri uri;
-            if (mMediaType == MediaItem.PHOTO) {
-                uri = MediaUtils.getPhotoUri((Cursor) object);
-            } else {
-                uri = MediaUtils.getVideoUri((Cursor) object);
-            }
-            PickerImageView pickerImageView = (PickerImageView) view
-                    .findViewById(R.id.thumbnail);
-            MediaItem mediaItem = new MediaItem(mMediaType, uri);
-            mMediaAdapter.updateMediaSelected(mediaItem, pickerImageView);
-            mMediaSelectedList = mMediaAdapter.getMediaSelectedList();
-
-            if (mMediaAdapter.hasSelected()) {
+        if (object instanceof MediaItem) {
+            MediaItem mediaItem = (MediaItem) object;
+            boolean hadSelected = mMediaAdapter.hasSelected();
+            mMediaAdapter.updateMediaSelected(mediaItem, mGridView, view);
+            // adapter owns selection from now on. List of selection isn't
+            // read for each click, so unselect stays O(1).
+            mMediaSelectedList = null;
+
+            boolean hasSelected = mMediaAdapter.hasSelected();
+            if (hasSelected && !hadSelected) {
                 mMediaSelectedListener.onHasSelected(mMediaAdapter
                         .getMediaSelectedList());
-            } else {
+            } else if (!hasSelected && hadSelected) {
                 mMediaSelectedListener.onHasNoSelected();
             }
         }
@@ -243,41 +399,86 @@ public class MediaPickerFragment extends BaseFragment implements
     public void switchMediaSelector() {
         if (!mMediaOptions.canSelectPhotoAndVideo())
             return;
+        saveGridState();
         if (mMediaType == MediaItem.PHOTO) {
             mMediaType = MediaItem.VIDEO;
         } else {
             mMediaType = MediaItem.PHOTO;
         }
-        switch (mMediaType) {
-            case MediaItem.PHOTO:
-                requestPhotos(true);
-                break;
-            case MediaItem.VIDEO:
-                requestVideos(true);
-                break;
-            default:
-                break;
+        MediaIndex index = getFilteredIndex();
+        if (index == null) {
+            // not loaded yet, bound when loader delivers.
+            if (mMediaAdapter != null)
+                mMediaAdapter.setMediaIndex(null);
+            requestMedia(getLoaderId());
+            return;
         }
+        boolean hasGridState = mSavedInstanceState
+                .containsKey(getGridStateKey(mMediaType));
+        bindData(index);
+        if (!hasGridState && mGridView != null)
+            mGridView.setSelection(0);
+    }
+
+    /**
+     * Browse media of album.
+     *
+     * @param album album to browse, null for all media.
+     */
+    public void setAlbum(Album album) {
+        String bucketId = album == null ? null : String.valueOf(album
+                .getBucketId());
+        if (TextUtils.equals(bucketId, mBucketId))
+            return;
+        mBucketId = bucketId;
+        // grid positions were of media of other album.
+        mSavedInstanceState.remove(getGridStateKey(MediaItem.PHOTO));
+        mSavedInstanceState.remove(getGridStateKey(MediaItem.VIDEO));
+        LoaderManager loaderManager = getLoaderManager();
+        int loaderId = getLoaderId();
+        for (int id : new int[]{MediaIndex.PHOTO_AND_VIDEO, MediaItem.PHOTO,
+                MediaItem.VIDEO}) {
+            mMediaIndexes.remove(id);
+            if (id != loaderId)
+                loaderManager.destroyLoader(id);
+        }
+        loaderManager.restartLoader(loaderId, null, this);
+        if (mGridView != null)
+            mGridView.setSelection(0);
+    }
+
+    /**
+     * @return media type of albums to browse, see
+     * {@link vn.tungdx.mediapicker.loader.AlbumLoader}
+     */
+    public int getAlbumMediaType() {
+        return getLoaderId();
     }
 
     public List<MediaItem> getMediaSelectedList() {
+        if (mMediaSelectedList == null && mMediaAdapter != null)
+            return mMediaAdapter.getMediaSelectedList();
         return mMediaSelectedList;
     }
 
     public boolean hasMediaSelected() {
+        if (mMediaSelectedList == null && mMediaAdapter != null)
+            return mMediaAdapter.hasSelected();
         return mMediaSelectedList != null && mMediaSelectedList.size() > 0;
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (mGridView != null) {
-            mSavedInstanceState.putParcelable(KEY_GRID_STATE,
-                    mGridView.onSaveInstanceState());
-            mGridView = null;
+        saveGridState();
+        mGridView = null;
+        if (mScrollLoadScheduler != null) {
+            mScrollLoadScheduler.reset();
+            mScrollLoadScheduler = null;
         }
-        if (mMediaAdapter != null) {
-            mMediaAdapter.onDestroyView();
+        if (mMediaPrefetcher != null) {
+            mMediaPrefetcher.reset();
+            mMediaPrefetcher = null;
         }
     }
 
@@ -329,4 +530,26 @@ public class MediaPickerFragment extends BaseFragment implements
                     }
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * Save first rows of grid on background thread, index is immutable so it
+     * can be read there.
+     */
+    private static class SaveSnapshotTask extends AsyncTask<Void, Void, Void> {
+        private final File mFile;
+        private final String mKey;
+        private final MediaIndex mIndex;
+
+        SaveSnapshotTask(File file, String key, MediaIndex index) {
+            mFile = file;
+            mKey = key;
+            mIndex = index;
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            GridSnapshot.write(mFile, mKey, mIndex);
+            return null;
+        }
+    }
+}
@@ -5,9 +5,13 @@ import android.app.ProgressDialog;
 import android.content.ContentResolver;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
@@ -27,6 +31,7 @@ import vn.tungdx.mediapicker.CropListener;
 import vn.tungdx.mediapicker.MediaItem;
 import vn.tungdx.mediapicker.MediaOptions;
 import vn.tungdx.mediapicker.R;
+import vn.tungdx.mediapicker.utils.CropRegionDecoder;
 import vn.tungdx.mediapicker.utils.MediaUtils;
 import vn.tungdx.mediapicker.utils.Utils;
 /**
@@ -39,6 +44,7 @@ import vn.tungdx.mediapicker.utils.Utils;
 public class PhotoCropFragment extends BaseFragment implements OnClickListener {
     private static final String EXTRA_MEDIA_SELECTED = "extra_media_selected";
     private static final String EXTRA_MEDIA_OPTIONS = "extra_media_options";
+    private static final String KEY_ROTATION = "rotation";
 
     private CropListener mCropListener;
     private MediaOptions mMediaOptions;
@@ -49,6 +55,14 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
     private View mSave;
     private ProgressDialog mDialog;
     private SaveFileCroppedTask mSaveFileCroppedTask;
+    // original file, to decode cropped region at full resolution.
+    private String mFilePath;
+    private int mSourceWidth, mSourceHeight;
+    // size of bitmap displayed, before rotation.
+    private int mBitmapWidth, mBitmapHeight;
+    private int mExifRotation;
+    // rotation by user, CropImageView restores it with its own state.
+    private int mRotation;
 
     public static PhotoCropFragment newInstance(MediaItem item,
                                                  MediaOptions options) {
@@ -74,6 +88,7 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
                     .getParcelable(EXTRA_MEDIA_SELECTED);
             mMediaOptions = savedInstanceState
                     .getParcelable(EXTRA_MEDIA_OPTIONS);
+            mRotation = savedInstanceState.getInt(KEY_ROTATION);
         } else {
             Bundle bundle = getArguments();
             mMediaItemSelected = bundle.getParcelable(EXTRA_MEDIA_SELECTED);
@@ -86,6 +101,7 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
         super.onSaveInstanceState(outState);
         outState.putParcelable(EXTRA_MEDIA_OPTIONS, mMediaOptions);
         outState.putParcelable(EXTRA_MEDIA_SELECTED, mMediaItemSelected);
+        outState.putInt(KEY_ROTATION, mRotation);
     }
 
     @Override
@@ -132,20 +148,49 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
         int width = getResources().getDisplayMetrics().widthPixels / 3 * 2;
         Bitmap bitmap = MediaUtils.decodeSampledBitmapFromFile(filePath, width,
                 width);
+        if (bitmap != null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(filePath, options);
+            mFilePath = filePath;
+            mSourceWidth = options.outWidth;
+            mSourceHeight = options.outHeight;
+            mBitmapWidth = bitmap.getWidth();
+            mBitmapHeight = bitmap.getHeight();
+        }
         try {
             ExifInterface exif = new ExifInterface(filePath);
+            mExifRotation = getRotation(exif);
             mCropImageView.setImageBitmap(bitmap, exif);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @return rotation CropImageView applies for orientation in exif.
+     */
+    private static int getRotation(ExifInterface exif) {
+        switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                ExifInterface.ORIENTATION_NORMAL)) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
     @Override
     public void onClick(View v) {
         int i = v.getId();
         if (i == R.id.rotate_left) {// must catch exception, maybe bitmap in CropImage null
             try {
                 mCropImageView.rotateImage(-90);
+                mRotation -= 90;
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -153,6 +198,7 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
         } else if (i == R.id.rotate_right) {
             try {
                 mCropImageView.rotateImage(90);
+                mRotation += 90;
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -161,13 +207,45 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
             getFragmentManager().popBackStack();
 
         } else if (i == R.id.save) {
-            mSaveFileCroppedTask = new SaveFileCroppedTask(getActivity());
+            mSaveFileCroppedTask = new SaveFileCroppedTask(getActivity(),
+                    getSourceRegion());
             mSaveFileCroppedTask.execute();
 
         } else {
         }
     }
 
+    /**
+     * @return region of original file to crop, null if it can't be decoded
+     * by region.
+     */
+    private Rect getSourceRegion() {
+        if (mFilePath == null
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD_MR1)
+            return null;
+        // must catch exception, maybe bitmap in CropImage null
+        try {
+            RectF crop = mCropImageView.getActualCropRect();
+            return CropRegionDecoder.mapToSource(crop, mExifRotation
+                            + mRotation, mBitmapWidth, mBitmapHeight,
+                    mSourceWidth, mSourceHeight);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private Bitmap decodeCropped(Rect region) {
+        if (region != null) {
+            Bitmap bitmap = CropRegionDecoder.decode(mFilePath, region,
+                    mExifRotation + mRotation, mMediaOptions.getMaxCroppedSize());
+            if (bitmap != null)
+                return bitmap;
+        }
+        // below API 10 or file not decodable by region: crop displayed bitmap.
+        return mCropImageView.getCroppedImage();
+    }
+
     private Uri saveBitmapCropped(Bitmap bitmap) {
         if (bitmap == null)
             return null;
@@ -191,9 +269,15 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
 
     private class SaveFileCroppedTask extends AsyncTask<Void, Void, Uri> {
         private WeakReference<Activity> reference;
+        private final Rect mRegion;
 
-        public SaveFileCroppedTask(Activity activity) {
+        /**
+         * @param region region of original file to crop, null to crop bitmap
+         *               displayed.
+         */
+        public SaveFileCroppedTask(Activity activity, Rect region) {
             reference = new WeakReference<Activity>(activity);
+            mRegion = region;
         }
 
         @Override
@@ -212,7 +296,7 @@ public class PhotoCropFragment extends BaseFragment implements OnClickListener {
             // must try-catch, maybe getCroppedImage() method crash because not
             // set bitmap in mCropImageView
             try {
-                Bitmap bitmap = mCropImageView.getCroppedImage();
+                Bitmap bitmap = decodeCropped(mRegion);
                 uri = saveBitmapCropped(bitmap);
                 if (bitmap != null) {
                     bitmap.recycle();
@@ -0,0 +1,286 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Pool of bitmaps that no longer used, bucketed by size in bytes. Bitmaps in
+ * pool are reused by decoder through {@link android.graphics.BitmapFactory.Options#inBitmap}
+ * (API 11+), so scrolling grid doesn't allocate new bitmap for each cell.
+ * <p/>
+ * Bitmap is counted by references: memory cache, views that display it and
+ * decoded bitmaps not displayed yet. Bitmap goes into pool only when it has no
+ * reference anymore.
+ */
+public class BitmapPool {
+    private final int mMaxSize;
+    private int mSize;
+    private final TreeMap<Integer, LinkedList<Bitmap>> mBuckets = new TreeMap<Integer, LinkedList<Bitmap>>();
+    private final LinkedList<Bitmap> mPooledOrder = new LinkedList<Bitmap>();
+    private final IdentityHashMap<Bitmap, Integer> mReferences = new IdentityHashMap<Bitmap, Integer>();
+    private final HashMap<String, Bitmap> mInTransit = new HashMap<String, Bitmap>();
+
+    private long mAllocatedBytes;
+    private int mAllocationCount;
+    private long mReusedBytes;
+    private int mReuseCount;
+
+    /**
+     * @param maxSize max total size of bitmaps in pool, in bytes.
+     */
+    public BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @return true if device supports reuse bitmap when decode.
+     */
+    public static boolean canReuseBitmap() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    /**
+     * Get bitmap from pool that can be used as
+     * {@link android.graphics.BitmapFactory.Options#inBitmap} for decoding
+     * image of given size. Returned bitmap is removed from pool.
+     *
+     * @param width      width of decoded bitmap.
+     * @param height     height of decoded bitmap.
+     * @param config     config of decoded bitmap.
+     * @param sampleSize inSampleSize used for decoding.
+     * @return null if not found.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config,
+                                   int sampleSize) {
+        if (!canReuseBitmap() || width <= 0 || height <= 0)
+            return null;
+        final boolean exactSizeOnly = Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT;
+        // before KitKat, inBitmap must have same size and inSampleSize must be 1.
+        if (exactSizeOnly && sampleSize != 1)
+            return null;
+        final int bytes = width * height * getBytesPerPixel(config);
+        // accept bitmap at most 2 times larger, to not waste memory.
+        Map.Entry<Integer, LinkedList<Bitmap>> entry = mBuckets.ceilingEntry(bytes);
+        while (entry != null && entry.getKey() <= bytes * 2) {
+            Iterator<Bitmap> iterator = entry.getValue().iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.getConfig() != config)
+                    continue;
+                if (exactSizeOnly && (bitmap.getWidth() != width
+                        || bitmap.getHeight() != height))
+                    continue;
+                iterator.remove();
+                if (entry.getValue().isEmpty())
+                    mBuckets.remove(entry.getKey());
+                mPooledOrder.remove(bitmap);
+                mSize -= entry.getKey();
+                return bitmap;
+            }
+            entry = mBuckets.higherEntry(entry.getKey());
+        }
+        return null;
+    }
+
+    /**
+     * Add a reference to bitmap. Bitmap with reference is never put into pool.
+     *
+     * @param bitmap
+     */
+    public synchronized void acquire(Bitmap bitmap) {
+        if (bitmap == null)
+            return;
+        Integer count = mReferences.get(bitmap);
+        mReferences.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Remove a reference from bitmap. Bitmap without reference goes into pool.
+     *
+     * @param bitmap
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null)
+            return;
+        Integer count = mReferences.get(bitmap);
+        if (count == null)
+            return;
+        if (count > 1) {
+            mReferences.put(bitmap, count - 1);
+        } else {
+            mReferences.remove(bitmap);
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Mark bitmap just decoded for uri and not displayed yet. It's referenced
+     * until {@link #onDisplayed(String, Bitmap)} or
+     * {@link #releaseTransit(String)}.
+     *
+     * @param imageUri
+     * @param bitmap
+     */
+    synchronized void acquireTransit(String imageUri, Bitmap bitmap) {
+        if (imageUri == null || bitmap == null)
+            return;
+        acquire(bitmap);
+        Bitmap previous = mInTransit.put(imageUri, bitmap);
+        if (previous != null && previous != bitmap)
+            release(previous);
+    }
+
+    /**
+     * Bitmap of uri displayed in a view. Reference of decoding is moved to
+     * view.
+     *
+     * @param imageUri
+     * @param bitmap
+     */
+    synchronized void onDisplayed(String imageUri, Bitmap bitmap) {
+        if (bitmap == null)
+            return;
+        if (imageUri != null && mInTransit.get(imageUri) == bitmap) {
+            mInTransit.remove(imageUri);
+        } else {
+            acquire(bitmap);
+        }
+    }
+
+    /**
+     * Release reference of decoding when bitmap of uri is not displayed in a
+     * view (loaded without view, cancelled or failed).
+     *
+     * @param imageUri
+     */
+    synchronized void releaseTransit(String imageUri) {
+        if (imageUri == null)
+            return;
+        Bitmap bitmap = mInTransit.remove(imageUri);
+        if (bitmap != null)
+            release(bitmap);
+    }
+
+    private void put(Bitmap bitmap) {
+        if (!canReuseBitmap() || bitmap.isRecycled() || !bitmap.isMutable())
+            return;
+        final int bytes = getBytes(bitmap);
+        if (bytes > mMaxSize)
+            return;
+        LinkedList<Bitmap> bucket = mBuckets.get(bytes);
+        if (bucket == null) {
+            bucket = new LinkedList<Bitmap>();
+            mBuckets.put(bytes, bucket);
+        }
+        bucket.add(bitmap);
+        mPooledOrder.add(bitmap);
+        mSize += bytes;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Remove oldest bitmaps in pool until total size <= maxSize.
+     *
+     * @param maxSize in bytes.
+     */
+    public synchronized void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mPooledOrder.isEmpty()) {
+            Bitmap bitmap = mPooledOrder.removeFirst();
+            final int bytes = getBytes(bitmap);
+            LinkedList<Bitmap> bucket = mBuckets.get(bytes);
+            if (bucket != null) {
+                bucket.remove(bitmap);
+                if (bucket.isEmpty())
+                    mBuckets.remove(bytes);
+            }
+            mSize -= bytes;
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    synchronized void recordAllocation(Bitmap bitmap) {
+        mAllocationCount++;
+        mAllocatedBytes += getBytes(bitmap);
+    }
+
+    synchronized void recordReuse(Bitmap bitmap) {
+        mReuseCount++;
+        mReusedBytes += getBytes(bitmap);
+    }
+
+    /**
+     * @return total bytes of bitmaps allocated by decoder (not reused from
+     * pool) since created or {@link #resetCounters()}.
+     */
+    public synchronized long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    /**
+     * @return number of bitmaps allocated by decoder.
+     */
+    public synchronized int getAllocationCount() {
+        return mAllocationCount;
+    }
+
+    /**
+     * @return total bytes of bitmaps decoded into bitmap reused from pool.
+     */
+    public synchronized long getReusedBytes() {
+        return mReusedBytes;
+    }
+
+    /**
+     * @return number of bitmaps reused from pool.
+     */
+    public synchronized int getReuseCount() {
+        return mReuseCount;
+    }
+
+    /**
+     * @return total size of bitmaps in pool now, in bytes.
+     */
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    public synchronized void resetCounters() {
+        mAllocatedBytes = 0;
+        mAllocationCount = 0;
+        mReusedBytes = 0;
+        mReuseCount = 0;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    static int getBytes(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565
+                || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,58 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.content.Context;
+
+import com.nostra13.universalimageloader.core.download.BaseImageDownloader;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Downloader for media items. Thumbnail in {@link ThumbnailDiskStore} is
+ * returned first if exists, otherwise stream is read from MediaStore.
+ */
+public class MediaImageDownloader extends BaseImageDownloader {
+    private final ThumbnailDiskStore mThumbnailDiskStore;
+
+    /**
+     * @param context
+     * @param thumbnailDiskStore Can be null.
+     */
+    public MediaImageDownloader(Context context,
+                                ThumbnailDiskStore thumbnailDiskStore) {
+        super(context);
+        mThumbnailDiskStore = thumbnailDiskStore;
+    }
+
+    @Override
+    protected final InputStream getStreamFromContent(String imageUri, Object extra)
+            throws FileNotFoundException {
+        if (mThumbnailDiskStore != null) {
+            long key = ThumbnailDiskStore.keyOf(imageUri);
+            if (key >= 0) {
+                InputStream stored = mThumbnailDiskStore.get(key);
+                if (stored != null)
+                    return stored;
+            }
+        }
+        return getStreamFromMediaStore(imageUri, extra);
+    }
+
+    /**
+     * Get stream of media item when it's not in {@link ThumbnailDiskStore}.
+     * Default is stream of original file.
+     *
+     * @param imageUri
+     * @param extra
+     * @return
+     * @throws FileNotFoundException
+     */
+    protected InputStream getStreamFromMediaStore(String imageUri, Object extra)
+            throws FileNotFoundException {
+        return super.getStreamFromContent(imageUri, extra);
+    }
+}
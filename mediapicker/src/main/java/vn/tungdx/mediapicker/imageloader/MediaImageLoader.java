@@ -8,4 +8,61 @@ import android.widget.ImageView;
  */
 public interface MediaImageLoader {
     void displayImage(Uri uri, ImageView imageView);
+
+    /**
+     * Display image decoded for a known target size. Use when size of view is
+     * known before layout (ex: grid cell), so loader don't have to guess it
+     * from the view.
+     *
+     * @param uri       Uri of media item (photo, video)
+     * @param imageView View to display image.
+     * @param width     target width, in pixels.
+     * @param height    target height, in pixels.
+     */
+    void displayImage(Uri uri, ImageView imageView, int width, int height);
+
+    /**
+     * Cancel pending load for view and release image displayed in it. Call
+     * when view is recycled, so decode for item that no longer visible is
+     * dropped and its bitmap can be reused.
+     *
+     * @param imageView
+     */
+    void cancelDisplayImage(ImageView imageView);
+
+    /**
+     * Pause loading. Loads requested while paused are queued until
+     * {@link #resume()}.
+     */
+    void pause();
+
+    /**
+     * Resume loading after {@link #pause()}.
+     */
+    void resume();
+
+    /**
+     * Load image into memory cache at low priority, without view. Later
+     * {@link #displayImage(Uri, ImageView, int, int)} with same size is served
+     * from memory.
+     *
+     * @param uri
+     * @param width  target width, in pixels.
+     * @param height target height, in pixels.
+     */
+    void prefetchImage(Uri uri, int width, int height);
+
+    /**
+     * Cancel all prefetch requested by
+     * {@link #prefetchImage(Uri, int, int)} and not done yet.
+     */
+    void cancelPrefetch();
+
+    /**
+     * Release memory of cache as level of memory pressure.
+     *
+     * @param level Level passed to
+     *              {@link android.content.ComponentCallbacks2#onTrimMemory(int)}
+     */
+    void trimMemory(int level);
 }
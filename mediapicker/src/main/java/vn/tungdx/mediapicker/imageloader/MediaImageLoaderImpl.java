@@ -1,47 +1,335 @@
 package vn.tungdx.mediapicker.imageloader;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.view.View;
 import android.widget.ImageView;
 
 import com.nostra13.universalimageloader.cache.disc.naming.Md5FileNameGenerator;
 import com.nostra13.universalimageloader.core.DisplayImageOptions;
 import com.nostra13.universalimageloader.core.ImageLoader;
 import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.assist.ImageScaleType;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
 import com.nostra13.universalimageloader.core.assist.QueueProcessingType;
+import com.nostra13.universalimageloader.core.assist.ViewScaleType;
 import com.nostra13.universalimageloader.core.imageaware.ImageAware;
 import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
+import com.nostra13.universalimageloader.core.imageaware.NonViewAware;
+import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
+
+import java.io.File;
+import java.util.LinkedList;
 
 import vn.tungdx.mediapicker.R;
+import vn.tungdx.mediapicker.ThumbnailCachePolicy;
 
 /**
  * @author TUNGDX
  */
 
+/**
+ * {@link MediaImageLoader} backed by its own {@link ImageLoader} instance, not
+ * {@link ImageLoader#getInstance()}: host app may already init the singleton
+ * with its own configuration, which would leave out memory cache, decoder,
+ * downloader and disk store of picker.
+ */
 public class MediaImageLoaderImpl implements MediaImageLoader {
+    private static final long DISK_STORE_SIZE = 16 * 1024 * 1024;
+    private static final String DISK_STORE_DIR = "mediapicker_thumbnails";
+
+    private final BitmapPool mBitmapPool;
+    private final PoolingMemoryCache mMemoryCache;
+    private final ThumbnailDiskStore mThumbnailDiskStore;
+    private final ImageLoader mImageLoader = new PickerImageLoader();
+    private final DisplayImageOptions mDisplayOptions = new DisplayImageOptions.Builder()
+            .cacheInMemory(true)
+            .showImageOnLoading(R.color.picker_imageloading)
+            // thumbnails are stored by ThumbnailDiskStore, not by disk cache
+            // of ImageLoader.
+            .cacheOnDisk(false)
+            .considerExifParams(true).resetViewBeforeLoading(true).build();
+    // decode with nearest power-of-two sample, so memory per cell is
+    // proportional to cell size, not to size of original photo.
+    private final DisplayImageOptions mSizedDisplayOptions = new DisplayImageOptions.Builder()
+            .cloneFrom(mDisplayOptions)
+            .imageScaleType(ImageScaleType.IN_SAMPLE_POWER_OF_2).build();
+    // Prefetch runs one request at a time, so it takes at most one loader
+    // thread and never delays loads for visible cells.
+    private final LinkedList<Uri> mPrefetchQueue = new LinkedList<Uri>();
+    private ImageSize mPrefetchSize;
+    private ImageAware mPrefetching;
+    private String mPrefetchingUri;
+    // prefetchNext() is running: requests completing synchronously inside it
+    // (memory cache hit) only clear state, loop picks next request.
+    private boolean mInPrefetchLoop;
+    private DisplayImageOptions mPrefetchOptions;
 
+    /**
+     * Create loader with memory cache size of
+     * {@link ThumbnailCachePolicy#createDefault()}
+     *
+     * @param context
+     */
     public MediaImageLoaderImpl(Context context) {
-        ImageLoaderConfiguration imageLoaderConfig = new ImageLoaderConfiguration.Builder(context)
+        this(context, ThumbnailCachePolicy.createDefault().getMemoryCacheSize(
+                context));
+    }
+
+    /**
+     * @param context
+     * @param memoryCacheSize size of memory cache, in bytes. See
+     *                        {@link ThumbnailCachePolicy#getMemoryCacheSize(Context)}
+     */
+    public MediaImageLoaderImpl(Context context, int memoryCacheSize) {
+        mBitmapPool = new BitmapPool(memoryCacheSize / 4);
+        mMemoryCache = new PoolingMemoryCache(memoryCacheSize, mBitmapPool);
+        mThumbnailDiskStore = new ThumbnailDiskStore(context, new File(
+                context.getCacheDir(), DISK_STORE_DIR), DISK_STORE_SIZE);
+        ImageLoaderConfiguration imageLoaderConfig = createConfigurationBuilder(context)
+                .build();
+
+        mImageLoader.init(imageLoaderConfig);
+    }
+
+    /**
+     * Constructor of {@link ImageLoader} is protected, only singleton is
+     * meant to be created.
+     */
+    private static class PickerImageLoader extends ImageLoader {
+    }
+
+    /**
+     * Create configuration for {@link ImageLoader}. Subclass can override to
+     * change downloader, decoder... Called from constructor, so must not
+     * depend on fields of subclass.
+     *
+     * @param context
+     * @return
+     */
+    protected ImageLoaderConfiguration.Builder createConfigurationBuilder(Context context) {
+        // LIFO: newest requests (cells user stopped on) are served first.
+        return new ImageLoaderConfiguration.Builder(context)
                 .threadPriority(Thread.NORM_PRIORITY - 2)
                 .denyCacheImageMultipleSizesInMemory()
                 .diskCacheFileNameGenerator(new Md5FileNameGenerator())
-                .memoryCacheSizePercentage(30)
-                .tasksProcessingOrder(QueueProcessingType.FIFO)
-                .writeDebugLogs().threadPoolSize(3)
-                .build();
+                .memoryCache(mMemoryCache)
+                .imageDecoder(new StoringImageDecoder(new PoolingImageDecoder(
+                        mBitmapPool, true), mThumbnailDiskStore))
+                .imageDownloader(new MediaImageDownloader(context,
+                        mThumbnailDiskStore))
+                .tasksProcessingOrder(QueueProcessingType.LIFO)
+                .writeDebugLogs().threadPoolSize(3);
+    }
+
+    /**
+     * @return Store of thumbnails on disk, shared with downloader and decoder.
+     */
+    protected ThumbnailDiskStore getThumbnailDiskStore() {
+        return mThumbnailDiskStore;
+    }
+
+    /**
+     * @return {@link ImageLoader} used by this loader, not the singleton.
+     */
+    public ImageLoader getImageLoader() {
+        return mImageLoader;
+    }
+
+    /**
+     * @return Memory cache of thumbnails. Use its counters (hit, miss,
+     * eviction) to tune size of cache.
+     */
+    public PoolingMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
 
-        ImageLoader.getInstance().init(imageLoaderConfig);
+    /**
+     * @return Pool of bitmaps reused when decode. Use its counters to check
+     * bitmap allocation while scrolling.
+     */
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
     }
 
     @Override
     public void displayImage(Uri uri, ImageView imageView) {
-        DisplayImageOptions displayImageOptions = new DisplayImageOptions.Builder()
-                .cacheInMemory(true).cacheOnDisk(true)
-                .showImageOnLoading(R.color.picker_imageloading)
-                .cacheOnDisk(false)
-                .considerExifParams(true).resetViewBeforeLoading(true).build();
-
         ImageAware imageAware = new ImageViewAware(imageView, false);
-        ImageLoader.getInstance().displayImage(uri.toString(), imageAware, displayImageOptions);
+        mImageLoader.displayImage(uri.toString(), imageAware,
+                mDisplayOptions, mDisplayListener);
+    }
+
+    @Override
+    public void displayImage(Uri uri, ImageView imageView, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            displayImage(uri, imageView);
+            return;
+        }
+        // one aware per view, reused on every bind of recycled cell.
+        SizedImageViewAware imageAware = (SizedImageViewAware) imageView
+                .getTag(R.id.picker_image_aware);
+        if (imageAware == null) {
+            imageAware = new SizedImageViewAware(imageView, width, height);
+            imageView.setTag(R.id.picker_image_aware, imageAware);
+        } else {
+            imageAware.setSize(width, height);
+        }
+        mImageLoader.displayImage(uri.toString(), imageAware,
+                mSizedDisplayOptions, mDisplayListener);
+    }
+
+    @Override
+    public void cancelDisplayImage(ImageView imageView) {
+        mImageLoader.cancelDisplayTask(imageView);
+        // view is recycled, bitmap displayed can go back to pool.
+        Bitmap displayed = (Bitmap) imageView.getTag(R.id.picker_pooled_bitmap);
+        if (displayed != null) {
+            imageView.setTag(R.id.picker_pooled_bitmap, null);
+            Drawable drawable = imageView.getDrawable();
+            if (drawable instanceof BitmapDrawable
+                    && ((BitmapDrawable) drawable).getBitmap() == displayed) {
+                imageView.setImageDrawable(null);
+            }
+            mBitmapPool.release(displayed);
+        }
+    }
+
+    private final SimpleImageLoadingListener mDisplayListener = new SimpleImageLoadingListener() {
+        @Override
+        public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
+            if (view == null || loadedImage == null)
+                return;
+            // keep bitmap referenced while it's displayed in view.
+            Bitmap previous = (Bitmap) view.getTag(R.id.picker_pooled_bitmap);
+            mBitmapPool.onDisplayed(imageUri, loadedImage);
+            view.setTag(R.id.picker_pooled_bitmap, loadedImage);
+            mBitmapPool.release(previous);
+        }
+
+        @Override
+        public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
+            mBitmapPool.releaseTransit(imageUri);
+        }
+
+        @Override
+        public void onLoadingCancelled(String imageUri, View view) {
+            mBitmapPool.releaseTransit(imageUri);
+        }
+    };
+
+    @Override
+    public void pause() {
+        mImageLoader.pause();
+    }
+
+    @Override
+    public void resume() {
+        mImageLoader.resume();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // process is likely to be killed, release all.
+            cancelPrefetch();
+            mMemoryCache.clear();
+            mBitmapPool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 4);
+            mBitmapPool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+            mBitmapPool.trimToSize(mBitmapPool.getSize() / 2);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 4 * 3);
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            mThumbnailDiskStore.flush();
+        }
+    }
+
+    @Override
+    public void prefetchImage(Uri uri, int width, int height) {
+        if (uri == null || width <= 0 || height <= 0)
+            return;
+        if (mPrefetchSize == null || mPrefetchSize.getWidth() != width
+                || mPrefetchSize.getHeight() != height) {
+            mPrefetchSize = new ImageSize(width, height);
+        }
+        mPrefetchQueue.add(uri);
+        prefetchNext();
+    }
+
+    @Override
+    public void cancelPrefetch() {
+        mPrefetchQueue.clear();
+        if (mPrefetching != null) {
+            ImageAware prefetching = mPrefetching;
+            mPrefetching = null;
+            mPrefetchingUri = null;
+            mImageLoader.cancelDisplayTask(prefetching);
+        }
+    }
+
+    private void prefetchNext() {
+        if (mInPrefetchLoop)
+            return;
+        mInPrefetchLoop = true;
+        try {
+            // loop instead of recursion: image in memory cache completes
+            // synchronously inside displayImage().
+            while (mPrefetching == null && !mPrefetchQueue.isEmpty()) {
+                if (mPrefetchOptions == null) {
+                    mPrefetchOptions = new DisplayImageOptions.Builder()
+                            .cacheInMemory(true).cacheOnDisk(false)
+                            .imageScaleType(ImageScaleType.IN_SAMPLE_POWER_OF_2)
+                            .considerExifParams(true).build();
+                }
+                String uri = mPrefetchQueue.removeFirst().toString();
+                mPrefetchingUri = uri;
+                mPrefetching = new NonViewAware(uri, mPrefetchSize,
+                        ViewScaleType.CROP);
+                mImageLoader.displayImage(uri, mPrefetching,
+                        mPrefetchOptions, mPrefetchListener);
+            }
+        } finally {
+            mInPrefetchLoop = false;
+        }
+    }
+
+    private final SimpleImageLoadingListener mPrefetchListener = new SimpleImageLoadingListener() {
+        @Override
+        public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
+            mBitmapPool.releaseTransit(imageUri);
+            onPrefetchDone(imageUri);
+        }
+
+        @Override
+        public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
+            mBitmapPool.releaseTransit(imageUri);
+            onPrefetchDone(imageUri);
+        }
+
+        @Override
+        public void onLoadingCancelled(String imageUri, View view) {
+            mBitmapPool.releaseTransit(imageUri);
+            onPrefetchDone(imageUri);
+        }
+    };
+
+    private void onPrefetchDone(String imageUri) {
+        if (mPrefetching != null && imageUri.equals(mPrefetchingUri)) {
+            mPrefetching = null;
+            mPrefetchingUri = null;
+            if (!mInPrefetchLoop)
+                prefetchNext();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+
+import vn.tungdx.mediapicker.ThumbnailCachePolicy;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Holds one {@link MediaImageLoader} for whole process. Thread pools and
+ * caches of loader are created once and kept between picker launches and
+ * configuration changes, so thumbnails loaded before are shown immediately
+ * when picker opens again.
+ * <p/>
+ * Host app can configure loader once (ex: in
+ * {@link android.app.Application#onCreate()}) by
+ * {@link #setImageLoader(MediaImageLoader)} or {@link #setFactory(Factory)}.
+ * Otherwise {@link MediaStoreThumbnailLoader} is created when picker opens
+ * first time.
+ * <p/>
+ * Loader lives as long as process, so it's trimmed by callbacks registered
+ * once to application (API 14+), not by picker activities.
+ */
+public class MediaImageLoaderRegistry {
+    private static MediaImageLoader sImageLoader;
+    private static Factory sFactory;
+    private static ComponentCallbacks2 sTrimMemoryCallbacks;
+
+    /**
+     * Create {@link MediaImageLoader} when picker needs it first time.
+     */
+    public interface Factory {
+        MediaImageLoader create(Context context, ThumbnailCachePolicy policy);
+    }
+
+    private MediaImageLoaderRegistry() {
+    }
+
+    /**
+     * Set loader used by all pickers. Should call once, before open picker.
+     *
+     * @param imageLoader
+     */
+    public static synchronized void setImageLoader(MediaImageLoader imageLoader) {
+        sImageLoader = imageLoader;
+    }
+
+    /**
+     * Set factory to create loader lazily. Not effective if loader already
+     * created.
+     *
+     * @param factory
+     */
+    public static synchronized void setFactory(Factory factory) {
+        sFactory = factory;
+    }
+
+    /**
+     * Get shared loader. Create it if not exist.
+     *
+     * @param context
+     * @param policy  used only when loader is created. Can be null for
+     *                {@link ThumbnailCachePolicy#createDefault()}
+     * @return
+     */
+    public static synchronized MediaImageLoader get(Context context,
+                                                    ThumbnailCachePolicy policy) {
+        if (sImageLoader == null) {
+            Context appContext = context.getApplicationContext();
+            if (policy == null)
+                policy = ThumbnailCachePolicy.createDefault();
+            if (sFactory != null) {
+                sImageLoader = sFactory.create(appContext, policy);
+            } else {
+                sImageLoader = new MediaStoreThumbnailLoader(appContext,
+                        policy.getMemoryCacheSize(appContext));
+            }
+        }
+        registerTrimMemoryCallbacks(context.getApplicationContext());
+        return sImageLoader;
+    }
+
+    /**
+     * @return true if loader is created or set.
+     */
+    public static synchronized boolean hasImageLoader() {
+        return sImageLoader != null;
+    }
+
+    private static synchronized void trimMemory(int level) {
+        if (sImageLoader != null)
+            sImageLoader.trimMemory(level);
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerTrimMemoryCallbacks(Context appContext) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH
+                || sTrimMemoryCallbacks != null)
+            return;
+        sTrimMemoryCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        };
+        appContext.registerComponentCallbacks(sTrimMemoryCallbacks);
+    }
+}
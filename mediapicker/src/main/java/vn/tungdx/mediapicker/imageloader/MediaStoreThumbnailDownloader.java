@@ -0,0 +1,109 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore.Images;
+import android.provider.MediaStore.Video;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Downloader that reads thumbnails already generated by media scanner
+ * ({@link Images.Thumbnails}, {@link Video.Thumbnails}) instead of original
+ * photo, video. Only when no thumbnail exists, stream of original is returned
+ * and decoded with sample size by decoder.
+ */
+public class MediaStoreThumbnailDownloader extends MediaImageDownloader {
+    private static final String IMAGES_PREFIX = Images.Media.EXTERNAL_CONTENT_URI
+            .toString();
+    private static final String VIDEO_PREFIX = Video.Media.EXTERNAL_CONTENT_URI
+            .toString();
+    private static final String[] PROJECT_THUMBNAIL = {Images.Thumbnails.DATA};
+    // MINI_KIND (512 x 384) fits grid cell, MICRO_KIND (96 x 96) is last try
+    // before decode original.
+    private static final int[] KINDS = {Images.Thumbnails.MINI_KIND,
+            Images.Thumbnails.MICRO_KIND};
+
+    /**
+     * @param context
+     * @param thumbnailDiskStore Can be null.
+     */
+    public MediaStoreThumbnailDownloader(Context context,
+                                         ThumbnailDiskStore thumbnailDiskStore) {
+        super(context, thumbnailDiskStore);
+    }
+
+    @Override
+    protected InputStream getStreamFromMediaStore(String imageUri, Object extra)
+            throws FileNotFoundException {
+        InputStream thumbnail = getThumbnailStream(imageUri);
+        if (thumbnail != null)
+            return thumbnail;
+        return super.getStreamFromMediaStore(imageUri, extra);
+    }
+
+    private InputStream getThumbnailStream(String imageUri) {
+        final boolean isPhoto;
+        if (imageUri.startsWith(IMAGES_PREFIX)) {
+            isPhoto = true;
+        } else if (imageUri.startsWith(VIDEO_PREFIX)) {
+            isPhoto = false;
+        } else {
+            return null;
+        }
+        long id;
+        try {
+            id = ContentUris.parseId(Uri.parse(imageUri));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (id < 0)
+            return null;
+        for (int kind : KINDS) {
+            String path = queryThumbnailPath(context.getContentResolver(), id,
+                    kind, isPhoto);
+            if (path == null)
+                continue;
+            try {
+                return new FileInputStream(new File(path));
+            } catch (FileNotFoundException e) {
+                // thumbnail row exists but file removed, try next kind.
+            }
+        }
+        return null;
+    }
+
+    private static String queryThumbnailPath(ContentResolver contentResolver,
+                                             long id, int kind, boolean isPhoto) {
+        Cursor cursor;
+        if (isPhoto) {
+            cursor = Images.Thumbnails.queryMiniThumbnail(contentResolver, id,
+                    kind, PROJECT_THUMBNAIL);
+        } else {
+            cursor = contentResolver.query(Video.Thumbnails.EXTERNAL_CONTENT_URI,
+                    PROJECT_THUMBNAIL, Video.Thumbnails.VIDEO_ID + "=? AND "
+                            + Video.Thumbnails.KIND + "=?",
+                    new String[]{Long.toString(id), Integer.toString(kind)},
+                    null);
+        }
+        if (cursor == null)
+            return null;
+        try {
+            if (cursor.moveToFirst())
+                return cursor.getString(0);
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.content.Context;
+
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * {@link MediaImageLoader} that displays system thumbnails of photos and
+ * videos from MediaStore. Much cheaper than decode original for each grid
+ * cell. See {@link MediaStoreThumbnailDownloader}.
+ */
+public class MediaStoreThumbnailLoader extends MediaImageLoaderImpl {
+
+    public MediaStoreThumbnailLoader(Context context) {
+        super(context);
+    }
+
+    /**
+     * @param context
+     * @param memoryCacheSize size of memory cache, in bytes.
+     */
+    public MediaStoreThumbnailLoader(Context context, int memoryCacheSize) {
+        super(context, memoryCacheSize);
+    }
+
+    @Override
+    protected ImageLoaderConfiguration.Builder createConfigurationBuilder(Context context) {
+        return super.createConfigurationBuilder(context).imageDownloader(
+                new MediaStoreThumbnailDownloader(context,
+                        getThumbnailDiskStore()));
+    }
+}
@@ -0,0 +1,83 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory.Options;
+import android.os.Build;
+
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.decode.BaseImageDecoder;
+import com.nostra13.universalimageloader.core.decode.ImageDecodingInfo;
+
+import java.io.IOException;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Decoder that decodes into bitmap from {@link BitmapPool} when possible, and
+ * counts bitmaps allocated or reused.
+ */
+public class PoolingImageDecoder extends BaseImageDecoder {
+    private final BitmapPool mBitmapPool;
+    // inBitmap set for decoding on current thread.
+    private final ThreadLocal<Bitmap> mInBitmap = new ThreadLocal<Bitmap>();
+    private final ThreadLocal<Boolean> mSkipPool = new ThreadLocal<Boolean>();
+
+    public PoolingImageDecoder(BitmapPool bitmapPool, boolean loggingEnabled) {
+        super(loggingEnabled);
+        mBitmapPool = bitmapPool;
+    }
+
+    @Override
+    public Bitmap decode(ImageDecodingInfo decodingInfo) throws IOException {
+        Bitmap bitmap;
+        try {
+            bitmap = super.decode(decodingInfo);
+        } catch (IllegalArgumentException e) {
+            // image can not be decoded into bitmap from pool (format or size
+            // not supported), decode again without pool.
+            mSkipPool.set(Boolean.TRUE);
+            try {
+                bitmap = super.decode(decodingInfo);
+            } finally {
+                mSkipPool.set(null);
+            }
+        }
+        Bitmap inBitmap = mInBitmap.get();
+        mInBitmap.set(null);
+        if (bitmap != null) {
+            if (bitmap == inBitmap) {
+                mBitmapPool.recordReuse(bitmap);
+            } else {
+                mBitmapPool.recordAllocation(bitmap);
+            }
+            mBitmapPool.acquireTransit(decodingInfo.getImageUri(), bitmap);
+        }
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    @Override
+    protected Options prepareDecodingOptions(ImageSize imageSize,
+                                             ImageDecodingInfo decodingInfo) {
+        Options options = super.prepareDecodingOptions(imageSize, decodingInfo);
+        mInBitmap.set(null);
+        if (!BitmapPool.canReuseBitmap() || mSkipPool.get() != null)
+            return options;
+        // mutable, so bitmap can be reused after it's not used anymore.
+        options.inMutable = true;
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        final int width = (imageSize.getWidth() + sampleSize - 1) / sampleSize;
+        final int height = (imageSize.getHeight() + sampleSize - 1) / sampleSize;
+        final Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig
+                : Bitmap.Config.ARGB_8888;
+        Bitmap reusable = mBitmapPool.get(width, height, config, sampleSize);
+        if (reusable != null) {
+            options.inBitmap = reusable;
+            mInBitmap.set(reusable);
+        }
+        return options;
+    }
+}
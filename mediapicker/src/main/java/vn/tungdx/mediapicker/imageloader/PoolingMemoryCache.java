@@ -0,0 +1,162 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.graphics.Bitmap;
+
+import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * LRU memory cache limited by size in bytes. Bitmaps removed from cache are
+ * released to {@link BitmapPool}, so decoder can reuse them when they are not
+ * displayed anymore.
+ */
+public class PoolingMemoryCache implements MemoryCache {
+    private final LinkedHashMap<String, Bitmap> mMap = new LinkedHashMap<String, Bitmap>(
+            0, 0.75f, true);
+    private final BitmapPool mBitmapPool;
+    private final int mMaxSize;
+    private int mSize;
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * @param maxSize    max size of cache, in bytes.
+     * @param bitmapPool
+     */
+    public PoolingMemoryCache(int maxSize, BitmapPool bitmapPool) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mBitmapPool = bitmapPool;
+    }
+
+    @Override
+    public synchronized boolean put(String key, Bitmap value) {
+        if (key == null || value == null)
+            return false;
+        mBitmapPool.acquire(value);
+        mPutCount++;
+        mSize += BitmapPool.getBytes(value);
+        Bitmap previous = mMap.put(key, value);
+        if (previous != null) {
+            onRemoved(previous);
+        }
+        trimToSize(mMaxSize);
+        return true;
+    }
+
+    @Override
+    public synchronized Bitmap get(String key) {
+        if (key == null)
+            return null;
+        Bitmap bitmap = mMap.get(key);
+        if (bitmap != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return bitmap;
+    }
+
+    @Override
+    public synchronized Bitmap remove(String key) {
+        if (key == null)
+            return null;
+        Bitmap previous = mMap.remove(key);
+        if (previous != null) {
+            onRemoved(previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized Collection<String> keys() {
+        return new HashSet<String>(mMap.keySet());
+    }
+
+    @Override
+    public synchronized void clear() {
+        trimToSize(-1);
+    }
+
+    /**
+     * Remove least recently used bitmaps until total size <= maxSize.
+     *
+     * @param maxSize in bytes. -1 to remove all.
+     */
+    public synchronized void trimToSize(int maxSize) {
+        Iterator<Map.Entry<String, Bitmap>> iterator = mMap.entrySet()
+                .iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next().getValue();
+            iterator.remove();
+            mEvictionCount++;
+            onRemoved(bitmap);
+        }
+    }
+
+    /**
+     * @return total size of bitmaps in cache, in bytes.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public int maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return number of times {@link #get(String)} returned a bitmap.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return number of times {@link #get(String)} returned null.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return number of bitmaps put into cache.
+     */
+    public synchronized int putCount() {
+        return mPutCount;
+    }
+
+    /**
+     * @return number of bitmaps removed to keep cache in its size (by size
+     * limit or memory pressure).
+     */
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format("PoolingMemoryCache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%,evictions=%d]",
+                mSize, mMaxSize, mHitCount, mMissCount, hitPercent, mEvictionCount);
+    }
+
+    private void onRemoved(Bitmap bitmap) {
+        mSize -= BitmapPool.getBytes(bitmap);
+        mBitmapPool.release(bitmap);
+    }
+}
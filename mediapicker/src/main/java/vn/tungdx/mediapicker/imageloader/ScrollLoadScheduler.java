@@ -0,0 +1,78 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Schedule loading of {@link MediaImageLoader} by scroll state of grid. While
+ * flinging, cells pass too fast to be seen, so loading is paused and resumed
+ * when scroll slows down. Combined with LIFO queue of loader, cells that user
+ * stopped on are served first.
+ */
+public class ScrollLoadScheduler implements OnScrollListener {
+    private final MediaImageLoader mMediaImageLoader;
+    private final OnScrollListener mExternalListener;
+    private boolean mPaused = false;
+
+    public ScrollLoadScheduler(MediaImageLoader mediaImageLoader) {
+        this(mediaImageLoader, null);
+    }
+
+    /**
+     * @param mediaImageLoader
+     * @param externalListener Listener that also receives scroll events. Can be
+     *                         null.
+     */
+    public ScrollLoadScheduler(MediaImageLoader mediaImageLoader,
+                               OnScrollListener externalListener) {
+        mMediaImageLoader = mediaImageLoader;
+        mExternalListener = externalListener;
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (scrollState == OnScrollListener.SCROLL_STATE_FLING) {
+            pause();
+        } else {
+            resume();
+        }
+        if (mExternalListener != null) {
+            mExternalListener.onScrollStateChanged(view, scrollState);
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem,
+                         int visibleItemCount, int totalItemCount) {
+        if (mExternalListener != null) {
+            mExternalListener.onScroll(view, firstVisibleItem,
+                    visibleItemCount, totalItemCount);
+        }
+    }
+
+    /**
+     * Resume loader if paused by this scheduler. Must call when grid is
+     * destroyed while flinging, because loader is shared.
+     */
+    public void reset() {
+        resume();
+    }
+
+    private void pause() {
+        if (!mPaused) {
+            mPaused = true;
+            mMediaImageLoader.pause();
+        }
+    }
+
+    private void resume() {
+        if (mPaused) {
+            mPaused = false;
+            mMediaImageLoader.resume();
+        }
+    }
+}
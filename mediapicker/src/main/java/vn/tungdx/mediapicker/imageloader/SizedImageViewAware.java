@@ -0,0 +1,44 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.widget.ImageView;
+
+import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * {@link ImageViewAware} that reports a fixed target size instead of measuring
+ * the view. Before layout the view has no size and Universal Image Loader falls
+ * back to screen size, so the grid must tell the size explicitly.
+ */
+class SizedImageViewAware extends ImageViewAware {
+    private int mWidth;
+    private int mHeight;
+
+    public SizedImageViewAware(ImageView imageView, int width, int height) {
+        super(imageView, false);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Change target size, so aware can be reused for view when size of cell
+     * changed.
+     */
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+}
@@ -0,0 +1,58 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.graphics.Bitmap;
+
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.decode.ImageDecoder;
+import com.nostra13.universalimageloader.core.decode.ImageDecodingInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Decoder that saves decoded thumbnails of MediaStore items into
+ * {@link ThumbnailDiskStore}, so next launch of picker reads them from disk
+ * instead of decoding originals again.
+ */
+public class StoringImageDecoder implements ImageDecoder {
+    private static final int JPEG_QUALITY = 85;
+
+    private final ImageDecoder mDecoder;
+    private final ThumbnailDiskStore mThumbnailDiskStore;
+
+    public StoringImageDecoder(ImageDecoder decoder,
+                               ThumbnailDiskStore thumbnailDiskStore) {
+        mDecoder = decoder;
+        mThumbnailDiskStore = thumbnailDiskStore;
+    }
+
+    @Override
+    public Bitmap decode(ImageDecodingInfo decodingInfo) throws IOException {
+        final long key = ThumbnailDiskStore.keyOf(decodingInfo.getImageUri());
+        if (key < 0)
+            return mDecoder.decode(decodingInfo);
+        // stored thumbnail smaller than half of target (ex: grid cell became
+        // larger) is decoded from original again.
+        ImageSize targetSize = decodingInfo.getTargetSize();
+        final int minWidth = targetSize.getWidth() / 2;
+        final int minHeight = targetSize.getHeight() / 2;
+        boolean stored = mThumbnailDiskStore.contains(key);
+        if (stored && !mThumbnailDiskStore.contains(key, minWidth, minHeight)) {
+            mThumbnailDiskStore.remove(key);
+            stored = false;
+        }
+        Bitmap bitmap = mDecoder.decode(decodingInfo);
+        if (bitmap != null && !stored) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+                mThumbnailDiskStore.put(key, out.toByteArray(),
+                        bitmap.getWidth(), bitmap.getHeight());
+            }
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,564 @@
+package vn.tungdx.mediapicker.imageloader;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore.Images;
+import android.provider.MediaStore.MediaColumns;
+import android.provider.MediaStore.Video;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import vn.tungdx.mediapicker.utils.Utils;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Persistent store of grid thumbnails, keyed by MediaStore _ID and
+ * DATE_MODIFIED.
+ * <p/>
+ * All thumbnails are appended to one pack file and read through memory-mapped
+ * I/O. Index (key, offset, length...) is kept in memory and saved in a small
+ * index file. When pack file grows larger than max size, least recently used
+ * entries are dropped and pack file is rewritten (compaction).
+ * <p/>
+ * Compaction writes new pack under next generation and old pack is only
+ * deleted after index of new generation is saved, so index on disk always
+ * refers to pack it was written for. Pack is synced before index is saved.
+ * <p/>
+ * An entry is stale when its media item is modified after entry was written.
+ * Stale entries are dropped when store is opened, by one query for items
+ * which DATE_MODIFIED is newer than last open.
+ */
+public class ThumbnailDiskStore {
+    private static final String TAG = "ThumbnailDiskStore";
+    private static final String PACK_FILE_PREFIX = "thumbnails.";
+    private static final String PACK_FILE_SUFFIX = ".pack";
+    private static final String INDEX_FILE = "thumbnails.idx";
+    private static final int MAGIC = 0x4d505448;
+    private static final int VERSION = 2;
+    // save index after this number of puts or this time since last save. Lost
+    // entries (crash) are only decoded again.
+    private static final int INDEX_SAVE_INTERVAL = 32;
+    private static final long INDEX_SAVE_DELAY = 2000;
+
+    private static final String IMAGES_PREFIX = Images.Media.EXTERNAL_CONTENT_URI
+            .toString();
+    private static final String VIDEO_PREFIX = Video.Media.EXTERNAL_CONTENT_URI
+            .toString();
+
+    private final Context mContext;
+    private final File mDirectory;
+    private final long mMaxSize;
+
+    private final HashMap<Long, Entry> mEntries = new HashMap<Long, Entry>();
+    private RandomAccessFile mPackFile;
+    // generation of pack file, increased by each compaction.
+    private long mGeneration;
+    private MappedByteBuffer mMapped;
+    private long mPackSize;
+    private long mLiveSize;
+    private long mAccessClock;
+    private long mLastSync;
+    private int mPutsSinceSave;
+    private long mLastIndexSave;
+    private boolean mOpened;
+    private boolean mBroken;
+
+    private static class Entry {
+        long key;
+        long stamp;
+        long offset;
+        int length;
+        int width;
+        int height;
+        long lastAccess;
+    }
+
+    /**
+     * @param context
+     * @param directory Directory contains files of store.
+     * @param maxSize   Max size of pack file, in bytes.
+     */
+    public ThumbnailDiskStore(Context context, File directory, long maxSize) {
+        mContext = context.getApplicationContext();
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @param imageUri Uri of photo or video in MediaStore.
+     * @return key of uri in store, -1 if uri is not of MediaStore.
+     */
+    public static long keyOf(String imageUri) {
+        if (imageUri == null)
+            return -1;
+        final int type;
+        final int start;
+        if (imageUri.startsWith(IMAGES_PREFIX)) {
+            type = 0;
+            start = IMAGES_PREFIX.length();
+        } else if (imageUri.startsWith(VIDEO_PREFIX)) {
+            type = 1;
+            start = VIDEO_PREFIX.length();
+        } else {
+            return -1;
+        }
+        if (imageUri.length() <= start + 1 || imageUri.charAt(start) != '/')
+            return -1;
+        long id = 0;
+        for (int i = start + 1; i < imageUri.length(); i++) {
+            char c = imageUri.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            id = id * 10 + (c - '0');
+        }
+        // photo and video tables have own _ID before API 11.
+        return (id << 1) | type;
+    }
+
+    /**
+     * Get stream of thumbnail stored for key.
+     *
+     * @param key See {@link #keyOf(String)}
+     * @return null if not found.
+     */
+    public synchronized InputStream get(long key) {
+        if (!open())
+            return null;
+        Entry entry = mEntries.get(key);
+        if (entry == null)
+            return null;
+        try {
+            if (mMapped == null || entry.offset + entry.length > mMapped.capacity()) {
+                mMapped = mPackFile.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        0, mPackSize);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can not map pack file", e);
+            return null;
+        }
+        entry.lastAccess = ++mAccessClock;
+        ByteBuffer buffer = mMapped.duplicate();
+        buffer.position((int) entry.offset);
+        buffer.limit((int) entry.offset + entry.length);
+        return new ByteBufferInputStream(buffer.slice());
+    }
+
+    /**
+     * @param key
+     * @param width
+     * @param height
+     * @return true if store has thumbnail for key and it's at least as large
+     * as width x height.
+     */
+    public synchronized boolean contains(long key, int width, int height) {
+        if (!open())
+            return false;
+        Entry entry = mEntries.get(key);
+        return entry != null && entry.width >= width && entry.height >= height;
+    }
+
+    public synchronized boolean contains(long key) {
+        return contains(key, 0, 0);
+    }
+
+    public synchronized void remove(long key) {
+        if (!open())
+            return;
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mLiveSize -= entry.length;
+        }
+    }
+
+    /**
+     * Append thumbnail to store.
+     *
+     * @param key    See {@link #keyOf(String)}
+     * @param data   encoded thumbnail (ex: JPEG).
+     * @param width  width of thumbnail.
+     * @param height height of thumbnail.
+     */
+    public synchronized void put(long key, byte[] data, int width, int height) {
+        if (key < 0 || data == null || data.length == 0 || data.length > mMaxSize)
+            return;
+        if (!open())
+            return;
+        try {
+            mPackFile.seek(mPackSize);
+            mPackFile.write(data);
+        } catch (IOException e) {
+            Log.e(TAG, "Can not write pack file", e);
+            return;
+        }
+        Entry entry = new Entry();
+        entry.key = key;
+        entry.stamp = System.currentTimeMillis() / 1000;
+        entry.offset = mPackSize;
+        entry.length = data.length;
+        entry.width = width;
+        entry.height = height;
+        entry.lastAccess = ++mAccessClock;
+        Entry previous = mEntries.put(key, entry);
+        if (previous != null)
+            mLiveSize -= previous.length;
+        mLiveSize += data.length;
+        mPackSize += data.length;
+        if (mPackSize > mMaxSize) {
+            compact();
+        } else if (++mPutsSinceSave >= INDEX_SAVE_INTERVAL
+                || System.currentTimeMillis() - mLastIndexSave > INDEX_SAVE_DELAY) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Save index to disk. Call when thumbnails are not needed for a while (ex:
+     * picker closed).
+     */
+    public synchronized void flush() {
+        if (mOpened && mPutsSinceSave > 0)
+            saveIndex();
+    }
+
+    private boolean open() {
+        if (mOpened)
+            return true;
+        if (mBroken)
+            return false;
+        try {
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                throw new IOException("Can not create " + mDirectory);
+            }
+            loadIndex();
+            mPackFile = new RandomAccessFile(packFileOf(mGeneration), "rw");
+            mPackSize = mPackFile.length();
+            dropTruncatedEntries();
+            deleteOtherPacks();
+            dropModifiedEntries();
+            mOpened = true;
+            if (mPackSize > mMaxSize || mLiveSize < mPackSize / 2) {
+                compact();
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Can not open thumbnail store", e);
+            mBroken = true;
+            mEntries.clear();
+            return false;
+        }
+    }
+
+    private void loadIndex() {
+        File file = new File(mDirectory, INDEX_FILE);
+        if (!file.exists())
+            return;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return;
+            mGeneration = in.readLong();
+            mLastSync = in.readLong();
+            mAccessClock = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry();
+                entry.key = in.readLong();
+                entry.stamp = in.readLong();
+                entry.offset = in.readLong();
+                entry.length = in.readInt();
+                entry.width = in.readInt();
+                entry.height = in.readInt();
+                entry.lastAccess = in.readLong();
+                mEntries.put(entry.key, entry);
+                mLiveSize += entry.length;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Index of thumbnail store is broken, start empty", e);
+            mEntries.clear();
+            mLiveSize = 0;
+        } finally {
+            Utils.closeSilently(in);
+        }
+    }
+
+    /**
+     * Drop entries beyond end of pack file, ex: pack file of generation is
+     * missing.
+     */
+    private void dropTruncatedEntries() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.offset + entry.length > mPackSize) {
+                iterator.remove();
+                mLiveSize -= entry.length;
+            }
+        }
+    }
+
+    /**
+     * Delete pack files of other generations, left by compaction interrupted
+     * before or after index was saved.
+     */
+    private void deleteOtherPacks() {
+        File current = packFileOf(mGeneration);
+        File[] files = mDirectory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(PACK_FILE_PREFIX) && name.endsWith(PACK_FILE_SUFFIX)
+                    && !file.equals(current) && !file.delete()) {
+                Log.w(TAG, "Can not delete " + file);
+            }
+        }
+    }
+
+    private File packFileOf(long generation) {
+        return new File(mDirectory, PACK_FILE_PREFIX + generation + PACK_FILE_SUFFIX);
+    }
+
+    /**
+     * @return true if index is saved.
+     */
+    private boolean saveIndex() {
+        mPutsSinceSave = 0;
+        mLastIndexSave = System.currentTimeMillis();
+        File file = new File(mDirectory, INDEX_FILE);
+        File temp = new File(mDirectory, INDEX_FILE + ".tmp");
+        DataOutputStream out = null;
+        try {
+            // entries saved must be on disk before index refers to them.
+            mPackFile.getChannel().force(true);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(mGeneration);
+            out.writeLong(mLastSync);
+            out.writeLong(mAccessClock);
+            out.writeInt(mEntries.size());
+            for (Entry entry : mEntries.values()) {
+                out.writeLong(entry.key);
+                out.writeLong(entry.stamp);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+                out.writeInt(entry.width);
+                out.writeInt(entry.height);
+                out.writeLong(entry.lastAccess);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Can not save index of thumbnail store");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Can not save index of thumbnail store", e);
+            return false;
+        } finally {
+            Utils.closeSilently(out);
+        }
+    }
+
+    /**
+     * Drop entries of media items modified after entry was written. Only
+     * items modified since last open are queried.
+     */
+    private void dropModifiedEntries() {
+        final long now = System.currentTimeMillis() / 1000;
+        if (!mEntries.isEmpty()) {
+            ContentResolver resolver = mContext.getContentResolver();
+            dropModifiedEntries(resolver, Images.Media.EXTERNAL_CONTENT_URI, 0);
+            dropModifiedEntries(resolver, Video.Media.EXTERNAL_CONTENT_URI, 1);
+        }
+        mLastSync = now;
+    }
+
+    private void dropModifiedEntries(ContentResolver resolver, Uri uri, int type) {
+        Cursor cursor = null;
+        try {
+            cursor = resolver.query(uri, new String[]{MediaColumns._ID,
+                            MediaColumns.DATE_MODIFIED},
+                    MediaColumns.DATE_MODIFIED + ">?",
+                    new String[]{Long.toString(mLastSync)}, null);
+            if (cursor == null)
+                return;
+            while (cursor.moveToNext()) {
+                long key = (cursor.getLong(0) << 1) | type;
+                Entry entry = mEntries.get(key);
+                if (entry != null && entry.stamp <= cursor.getLong(1)) {
+                    mEntries.remove(key);
+                    mLiveSize -= entry.length;
+                }
+            }
+        } catch (RuntimeException e) {
+            // query may fail when external storage is not available.
+            Log.w(TAG, "Can not query modified media", e);
+        } finally {
+            if (cursor != null)
+                cursor.close();
+        }
+    }
+
+    /**
+     * Rewrite pack file with only most recently used entries, until it's
+     * smaller than 3/4 of max size. New pack is written under next generation,
+     * old pack is deleted once index of new one is saved.
+     */
+    private void compact() {
+        List<Entry> entries = new ArrayList<Entry>(mEntries.values());
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.lastAccess < rhs.lastAccess ? 1
+                        : (lhs.lastAccess == rhs.lastAccess ? 0 : -1);
+            }
+        });
+        final long target = mMaxSize / 4 * 3;
+        final long generation = mGeneration + 1;
+        File packFile = packFileOf(generation);
+        RandomAccessFile out = null;
+        long size = 0;
+        HashMap<Long, Entry> kept = new HashMap<Long, Entry>();
+        try {
+            MappedByteBuffer source = mPackFile.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, mPackSize);
+            out = new RandomAccessFile(packFile, "rw");
+            out.setLength(0);
+            byte[] buffer = new byte[0];
+            for (Entry entry : entries) {
+                if (size + entry.length > target)
+                    break;
+                if (buffer.length < entry.length)
+                    buffer = new byte[entry.length];
+                source.position((int) entry.offset);
+                source.get(buffer, 0, entry.length);
+                out.write(buffer, 0, entry.length);
+                entry.offset = size;
+                size += entry.length;
+                kept.put(entry.key, entry);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can not compact thumbnail store, clear it", e);
+            Utils.closeSilently(out);
+            if (!packFile.delete())
+                Log.w(TAG, "Can not delete " + packFile);
+            clear();
+            return;
+        }
+        RandomAccessFile oldPack = mPackFile;
+        File oldPackFile = packFileOf(mGeneration);
+        mMapped = null;
+        mPackFile = out;
+        mGeneration = generation;
+        mPackSize = size;
+        mLiveSize = size;
+        mEntries.clear();
+        mEntries.putAll(kept);
+        Utils.closeSilently(oldPack);
+        // if index is not saved, index on disk still refers to old pack, so
+        // keep it. Pack index doesn't refer to is deleted on next open.
+        if (saveIndex() && !oldPackFile.delete()) {
+            Log.w(TAG, "Can not delete " + oldPackFile);
+        }
+    }
+
+    private void clear() {
+        mEntries.clear();
+        mMapped = null;
+        mLiveSize = 0;
+        mPackSize = 0;
+        try {
+            if (mPackFile != null)
+                mPackFile.close();
+            mPackFile = new RandomAccessFile(packFileOf(mGeneration), "rw");
+            mPackFile.setLength(0);
+            saveIndex();
+        } catch (IOException e) {
+            Log.e(TAG, "Can not clear thumbnail store", e);
+            mOpened = false;
+            mBroken = true;
+        }
+    }
+
+    /**
+     * {@link InputStream} reads from {@link ByteBuffer}.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+        private int mMark;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!mBuffer.hasRemaining())
+                return -1;
+            return mBuffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (!mBuffer.hasRemaining())
+                return -1;
+            int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mBuffer.remaining();
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            int skipped = (int) Math.min(count, mBuffer.remaining());
+            mBuffer.position(mBuffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            mMark = mBuffer.position();
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            mBuffer.position(mMark);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package vn.tungdx.mediapicker.loader;
+
+import android.content.ContentUris;
+import android.net.Uri;
+
+import vn.tungdx.mediapicker.MediaItem;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Album (bucket) of media: folder media are stored in, with number of media
+ * and newest one as cover.
+ */
+public class Album {
+    private final long bucketId;
+    private final String name;
+    private final int count;
+    private final long coverId;
+    private final int coverType;
+
+    /**
+     * @param bucketId  value of bucket id column.
+     * @param name      display name of bucket, can be null.
+     * @param count     number of media in album.
+     * @param coverId   id of newest media in album.
+     * @param coverType {@link MediaItem#PHOTO} or {@link MediaItem#VIDEO}
+     */
+    public Album(long bucketId, String name, int count, long coverId,
+                 int coverType) {
+        this.bucketId = bucketId;
+        this.name = name;
+        this.count = count;
+        this.coverId = coverId;
+        this.coverType = coverType;
+    }
+
+    public long getBucketId() {
+        return bucketId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getCoverId() {
+        return coverId;
+    }
+
+    public int getCoverType() {
+        return coverType;
+    }
+
+    /**
+     * @return content uri of cover media.
+     */
+    public Uri getCoverUri() {
+        return ContentUris.withAppendedId(MediaIndex.getContentUri(coverType),
+                coverId);
+    }
+
+    @Override
+    public String toString() {
+        return "Album [bucketId=" + bucketId + ", name=" + name + ", count="
+                + count + "]";
+    }
+}
@@ -0,0 +1,282 @@
+package vn.tungdx.mediapicker.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore.Files.FileColumns;
+import android.provider.MediaStore.Images.ImageColumns;
+import android.provider.MediaStore.MediaColumns;
+import android.support.v4.content.AsyncTaskLoader;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import vn.tungdx.mediapicker.MediaItem;
+import vn.tungdx.mediapicker.utils.Utils;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Load {@link Album}s of media, newest first. Albums are built in one pass
+ * over id and bucket columns on background thread: count of each album and
+ * its newest media as cover.
+ * <p/>
+ * Albums are cached in a file between launches: cached albums are delivered
+ * first, then albums are built again and delivered when ready.
+ */
+public class AlbumLoader extends AsyncTaskLoader<List<Album>> {
+    private static final String TAG = "AlbumLoader";
+    private static final int CACHE_VERSION = 2;
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final int mMediaType;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    // albums are cached for this query only.
+    private final String mCacheKey;
+    private final File mCacheFile;
+    private List<Album> mAlbums;
+    private boolean mObserving;
+    private volatile boolean mCacheRead;
+    // albums loaded are from cache, built albums must follow.
+    private volatile boolean mFromCache;
+
+    /**
+     * @param context
+     * @param mediaType {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     *                  {@link MediaIndex#PHOTO_AND_VIDEO}
+     * @param selection     can be null, see {@link MediaFilter}.
+     * @param selectionArgs can be null.
+     */
+    public AlbumLoader(Context context, int mediaType, String selection,
+                       String[] selectionArgs) {
+        super(context);
+        mMediaType = mediaType;
+        mUri = MediaIndex.getContentUri(mediaType);
+        if (mediaType == MediaIndex.PHOTO_AND_VIDEO) {
+            mProjection = new String[]{MediaColumns._ID,
+                    ImageColumns.BUCKET_ID, ImageColumns.BUCKET_DISPLAY_NAME,
+                    FileColumns.MEDIA_TYPE};
+        } else {
+            mProjection = new String[]{MediaColumns._ID,
+                    ImageColumns.BUCKET_ID, ImageColumns.BUCKET_DISPLAY_NAME};
+        }
+        String baseSelection = MediaIndex.getSelection(mediaType);
+        if (baseSelection == null) {
+            mSelection = selection;
+        } else if (selection == null) {
+            mSelection = baseSelection;
+        } else {
+            mSelection = "(" + baseSelection + ") AND (" + selection + ")";
+        }
+        mSelectionArgs = selectionArgs;
+        mCacheKey = mSelection + " " + Arrays.toString(selectionArgs);
+        mCacheFile = new File(context.getCacheDir(), "picker_albums_"
+                + mediaType);
+    }
+
+    @Override
+    public List<Album> loadInBackground() {
+        if (!mCacheRead) {
+            mCacheRead = true;
+            List<Album> albums = readCache();
+            if (albums != null) {
+                mFromCache = true;
+                return albums;
+            }
+        }
+        List<Album> albums = buildAlbums();
+        if (albums != null) {
+            writeCache(albums);
+        }
+        return albums;
+    }
+
+    private List<Album> buildAlbums() {
+        Cursor cursor = getContext().getContentResolver().query(mUri,
+                mProjection, mSelection, mSelectionArgs,
+                MediaColumns.DATE_ADDED + " DESC, " + MediaColumns._ID
+                        + " DESC");
+        if (cursor == null)
+            return null;
+        try {
+            List<AlbumBuilder> builders = new ArrayList<AlbumBuilder>();
+            LongSparseArray<AlbumBuilder> buckets = new LongSparseArray<AlbumBuilder>();
+            while (cursor.moveToNext()) {
+                long bucketId = cursor.getLong(1);
+                AlbumBuilder builder = buckets.get(bucketId);
+                if (builder == null) {
+                    // first row of bucket is its newest media.
+                    builder = new AlbumBuilder();
+                    builder.bucketId = bucketId;
+                    builder.name = cursor.getString(2);
+                    builder.coverId = cursor.getLong(0);
+                    builder.coverType = getType(cursor);
+                    buckets.put(bucketId, builder);
+                    builders.add(builder);
+                }
+                builder.count++;
+            }
+            List<Album> albums = new ArrayList<Album>(builders.size());
+            for (AlbumBuilder builder : builders) {
+                albums.add(builder.build());
+            }
+            return albums;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int getType(Cursor cursor) {
+        if (mMediaType != MediaIndex.PHOTO_AND_VIDEO)
+            return mMediaType;
+        return cursor.getInt(3) == FileColumns.MEDIA_TYPE_VIDEO ? MediaItem.VIDEO
+                : MediaItem.PHOTO;
+    }
+
+    private List<Album> readCache() {
+        if (!mCacheFile.exists())
+            return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(mCacheFile)));
+            if (in.readInt() != CACHE_VERSION
+                    || !in.readUTF().equals(mCacheKey))
+                return null;
+            int size = in.readInt();
+            List<Album> albums = new ArrayList<Album>(size);
+            for (int i = 0; i < size; i++) {
+                long bucketId = in.readLong();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                int count = in.readInt();
+                long coverId = in.readLong();
+                int coverType = in.readByte();
+                albums.add(new Album(bucketId, name, count, coverId, coverType));
+            }
+            return albums;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read albums cache", e);
+            return null;
+        } finally {
+            Utils.closeSilently(in);
+        }
+    }
+
+    private void writeCache(List<Album> albums) {
+        // write to temp file, so cache is never read half written.
+        File temp = new File(mCacheFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)));
+            out.writeInt(CACHE_VERSION);
+            out.writeUTF(mCacheKey);
+            out.writeInt(albums.size());
+            for (Album album : albums) {
+                out.writeLong(album.getBucketId());
+                out.writeBoolean(album.getName() != null);
+                if (album.getName() != null) {
+                    out.writeUTF(album.getName());
+                }
+                out.writeInt(album.getCount());
+                out.writeLong(album.getCoverId());
+                out.writeByte(album.getCoverType());
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(mCacheFile)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write albums cache", e);
+            temp.delete();
+        } finally {
+            Utils.closeSilently(out);
+        }
+    }
+
+    @Override
+    public void deliverResult(List<Album> albums) {
+        if (isReset())
+            return;
+        mAlbums = albums;
+        if (isStarted()) {
+            super.deliverResult(albums);
+        }
+        if (mFromCache) {
+            mFromCache = false;
+            // cached albums are shown, build current ones.
+            onContentChanged();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            if (mMediaType == MediaIndex.PHOTO_AND_VIDEO) {
+                // files uri isn't notified when photos or videos change.
+                registerObserver(MediaIndex.getContentUri(MediaItem.PHOTO));
+                registerObserver(MediaIndex.getContentUri(MediaItem.VIDEO));
+            } else {
+                registerObserver(mUri);
+            }
+            mObserving = true;
+        }
+        if (mAlbums != null) {
+            deliverResult(mAlbums);
+        }
+        if (takeContentChanged() || mAlbums == null) {
+            forceLoad();
+        }
+    }
+
+    private void registerObserver(Uri uri) {
+        getContext().getContentResolver().registerContentObserver(uri, true,
+                mObserver);
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(
+                    mObserver);
+            mObserving = false;
+        }
+        mAlbums = null;
+    }
+
+    private static class AlbumBuilder {
+        long bucketId;
+        String name;
+        int count;
+        long coverId;
+        int coverType;
+
+        Album build() {
+            return new Album(bucketId, name, count, coverId, coverType);
+        }
+    }
+}
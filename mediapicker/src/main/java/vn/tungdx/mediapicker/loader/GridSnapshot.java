@@ -0,0 +1,117 @@
+package vn.tungdx.mediapicker.loader;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import vn.tungdx.mediapicker.utils.Utils;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * First rows of grid saved in a small file (id, date added, type: 17 bytes a
+ * row), so next launch shows grid before query returns. Snapshot is only read
+ * for same query it was saved for, and is replaced by rows of query once they
+ * are loaded.
+ */
+public class GridSnapshot {
+    private static final String TAG = "GridSnapshot";
+    private static final int VERSION = 1;
+    /**
+     * Max number of rows saved.
+     */
+    public static final int MAX_ROWS = 300;
+
+    private GridSnapshot() {
+    }
+
+    /**
+     * @param context
+     * @return file of snapshot, in cache dir.
+     */
+    public static File getFile(Context context) {
+        return new File(context.getCacheDir(), "picker_grid_snapshot");
+    }
+
+    /**
+     * Read snapshot. File is small enough to be read on main thread.
+     *
+     * @param file
+     * @param key  key of query, see {@link #write(File, String, MediaIndex)}
+     * @return index of rows saved, null if no snapshot saved for key.
+     */
+    public static MediaIndex read(File file, String key) {
+        if (!file.exists())
+            return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            if (in.readInt() != VERSION || !in.readUTF().equals(key))
+                return null;
+            int count = Math.min(in.readInt(), MAX_ROWS);
+            long[] ids = new long[count];
+            long[] dateAdded = new long[count];
+            byte[] types = new byte[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = in.readLong();
+                dateAdded[i] = in.readLong();
+                types[i] = in.readByte();
+            }
+            return count == 0 ? null : MediaIndex.fromRows(ids, dateAdded,
+                    types, count);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read grid snapshot", e);
+            return null;
+        } finally {
+            Utils.closeSilently(in);
+        }
+    }
+
+    /**
+     * Save first {@link #MAX_ROWS} rows of index. Should be called on
+     * background thread.
+     *
+     * @param file
+     * @param key   key of query index is loaded by.
+     * @param index unfiltered index.
+     */
+    public static void write(File file, String key, MediaIndex index) {
+        // write to temp file, so snapshot is never read half written.
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)));
+            int count = Math.min(index.getCount(), MAX_ROWS);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(index.getId(i));
+                out.writeLong(index.getDateAdded(i));
+                out.writeByte(index.getType(i));
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write grid snapshot", e);
+            temp.delete();
+        } finally {
+            Utils.closeSilently(out);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package vn.tungdx.mediapicker.loader;
+
+import android.provider.MediaStore.Files.FileColumns;
+import android.provider.MediaStore.MediaColumns;
+import android.provider.MediaStore.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.tungdx.mediapicker.MediaItem;
+import vn.tungdx.mediapicker.MediaOptions;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Selection of media query, clauses are joined by AND. Built from
+ * {@link MediaOptions}, so grid doesn't load media that would be rejected after
+ * selected. Video of unknown duration is still loaded and checked when
+ * selected.
+ */
+public class MediaFilter {
+    // duration limit accepts delta < 1000 ms, same as when video is checked.
+    private static final int DURATION_DELTA = 1000;
+
+    private final List<String> mClauses = new ArrayList<String>();
+    private final List<String> mArgs = new ArrayList<String>();
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     *                  {@link MediaIndex#PHOTO_AND_VIDEO}
+     * @param options
+     * @return filter of video duration, file size and mime types of options.
+     */
+    public static MediaFilter fromOptions(int mediaType, MediaOptions options) {
+        MediaFilter filter = new MediaFilter();
+        if (mediaType != MediaItem.PHOTO) {
+            filter.addDuration(mediaType, options.getMinVideoDuration(),
+                    options.getMaxVideoDuration());
+        }
+        if (options.getMinFileSize() > 0) {
+            filter.add(MediaColumns.SIZE + " >= ?",
+                    String.valueOf(options.getMinFileSize()));
+        }
+        if (options.getMaxFileSize() != Long.MAX_VALUE) {
+            filter.add(MediaColumns.SIZE + " <= ?",
+                    String.valueOf(options.getMaxFileSize()));
+        }
+        List<String> mimeTypes = options.getMimeTypes();
+        if (mimeTypes != null && !mimeTypes.isEmpty()) {
+            StringBuilder clause = new StringBuilder(MediaColumns.MIME_TYPE)
+                    .append(" IN (");
+            for (int i = 0; i < mimeTypes.size(); i++) {
+                clause.append(i == 0 ? "?" : ",?");
+            }
+            clause.append(')');
+            filter.add(clause.toString(),
+                    mimeTypes.toArray(new String[mimeTypes.size()]));
+        }
+        return filter;
+    }
+
+    private void addDuration(int mediaType, int minDuration, int maxDuration) {
+        List<String> clauses = new ArrayList<String>();
+        List<String> args = new ArrayList<String>();
+        if (minDuration > 0) {
+            clauses.add(Video.VideoColumns.DURATION + " >= ?");
+            args.add(String.valueOf(minDuration));
+        }
+        if (maxDuration != Integer.MAX_VALUE) {
+            clauses.add(Video.VideoColumns.DURATION + " < ?");
+            args.add(String.valueOf((long) maxDuration + DURATION_DELTA));
+        }
+        if (clauses.isEmpty())
+            return;
+        // duration of video not scanned yet is unknown (null or 0): it's shown
+        // and checked by reading file when selected.
+        String clause = Video.VideoColumns.DURATION + " IS NULL OR "
+                + Video.VideoColumns.DURATION + " = 0 OR (" + join(clauses)
+                + ")";
+        if (mediaType == MediaIndex.PHOTO_AND_VIDEO) {
+            // duration only limits videos.
+            clause = FileColumns.MEDIA_TYPE + " != "
+                    + FileColumns.MEDIA_TYPE_VIDEO + " OR (" + clause + ")";
+        }
+        add(clause, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * @param clause clause with ? for each argument.
+     * @param args   arguments of clause.
+     * @return this filter.
+     */
+    public MediaFilter add(String clause, String... args) {
+        mClauses.add(clause);
+        for (String arg : args) {
+            mArgs.add(arg);
+        }
+        return this;
+    }
+
+    /**
+     * @return selection of all clauses, null if no clause.
+     */
+    public String getSelection() {
+        return mClauses.isEmpty() ? null : join(mClauses);
+    }
+
+    /**
+     * @return arguments of selection, null if no argument.
+     */
+    public String[] getSelectionArgs() {
+        return mArgs.isEmpty() ? null : mArgs.toArray(new String[mArgs.size()]);
+    }
+
+    private static String join(List<String> clauses) {
+        StringBuilder selection = new StringBuilder();
+        for (String clause : clauses) {
+            if (selection.length() > 0) {
+                selection.append(" AND ");
+            }
+            selection.append('(').append(clause).append(')');
+        }
+        return selection.toString();
+    }
+}
@@ -0,0 +1,520 @@
+package vn.tungdx.mediapicker.loader;
+
+import android.annotation.TargetApi;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore.Files;
+import android.provider.MediaStore.Files.FileColumns;
+import android.provider.MediaStore.Images;
+import android.provider.MediaStore.MediaColumns;
+import android.provider.MediaStore.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.tungdx.mediapicker.MediaItem;
+import vn.tungdx.mediapicker.utils.LongHashSet;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Snapshot of media rows in primitive arrays: id, date added and type per row,
+ * about 17 bytes a row. Built once from a query on background thread, after
+ * that the cursor is closed and grid reads rows by position without it.
+ * <p/>
+ * With rich projection ({@link #getProjection(int, boolean)}), path, mime type,
+ * size, duration, width, height and orientation are kept too and carried into
+ * {@link MediaItem} by {@link #getItem(int)}, so item selected needs no
+ * further query.
+ * <p/>
+ * Index of photos and videos ({@link #PHOTO_AND_VIDEO}) is loaded by one query
+ * on {@link Files}, {@link #filter(int)} then gives photos or videos only
+ * without query.
+ * <p/>
+ * Index is immutable for readers. {@link #append(Cursor, int, boolean)}
+ * returns a new index that may share arrays with this one, but never writes
+ * rows this one can read. {@link #update(Cursor, LongHashSet, int)} returns
+ * a new index with changed rows merged in.
+ */
+public class MediaIndex {
+    /**
+     * Media type of index that contains both {@link MediaItem#PHOTO} and
+     * {@link MediaItem#VIDEO}.
+     */
+    public static final int PHOTO_AND_VIDEO = 0;
+    private static final int MIN_CAPACITY = 64;
+
+    private final long[] mIds;
+    private final long[] mDateAdded;
+    private final byte[] mTypes;
+    private final int mCount;
+    private final boolean mComplete;
+    // snapshot of loaded rows, rows changed after it are queried by them.
+    private final long mMaxId;
+    private final long mMaxDateModified;
+    // details of rich projection, null if not loaded.
+    private final Details mDetails;
+    // rows of filtered index in arrays, null if not filtered.
+    private final int[] mRows;
+
+    /**
+     * Create empty index.
+     */
+    public MediaIndex() {
+        this(new long[0], new long[0], new byte[0], null, null, 0, false, 0, 0);
+    }
+
+    private MediaIndex(long[] ids, long[] dateAdded, byte[] types,
+                       Details details, int[] rows, int count, boolean complete,
+                       long maxId, long maxDateModified) {
+        mIds = ids;
+        mDateAdded = dateAdded;
+        mTypes = types;
+        mDetails = details;
+        mRows = rows;
+        mCount = count;
+        mComplete = complete;
+        mMaxId = maxId;
+        mMaxDateModified = maxDateModified;
+    }
+
+    /**
+     * Create incomplete index of rows read without query, see
+     * {@link GridSnapshot}.
+     */
+    static MediaIndex fromRows(long[] ids, long[] dateAdded, byte[] types,
+                               int count) {
+        long maxId = 0;
+        for (int i = 0; i < count; i++) {
+            maxId = Math.max(maxId, ids[i]);
+        }
+        return new MediaIndex(ids, dateAdded, types, null, null, count, false,
+                maxId, 0);
+    }
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     *                  {@link #PHOTO_AND_VIDEO}
+     * @param rich      true to also query details carried into
+     *                  {@link MediaItem}.
+     * @return columns to query for index.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public static String[] getProjection(int mediaType, boolean rich) {
+        List<String> columns = new ArrayList<String>();
+        columns.add(MediaColumns._ID);
+        columns.add(MediaColumns.DATE_ADDED);
+        columns.add(MediaColumns.DATE_MODIFIED);
+        if (mediaType == PHOTO_AND_VIDEO) {
+            columns.add(FileColumns.MEDIA_TYPE);
+        }
+        if (rich) {
+            columns.add(MediaColumns.DATA);
+            columns.add(MediaColumns.MIME_TYPE);
+            columns.add(MediaColumns.SIZE);
+            // files table has columns of both photo and video.
+            if (mediaType != MediaItem.PHOTO) {
+                columns.add(Video.VideoColumns.DURATION);
+            }
+            if (mediaType != MediaItem.VIDEO) {
+                columns.add(Images.ImageColumns.ORIENTATION);
+            }
+            // columns exist since Jelly Bean.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                columns.add(MediaColumns.WIDTH);
+                columns.add(MediaColumns.HEIGHT);
+            }
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return false if rows after last row are not loaded yet.
+     */
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    /**
+     * @return greatest id of rows loaded, rows inserted after have greater id.
+     */
+    public long getMaxId() {
+        return mMaxId;
+    }
+
+    /**
+     * @return latest date modified of rows loaded, in seconds.
+     */
+    public long getMaxDateModified() {
+        return mMaxDateModified;
+    }
+
+    public long getId(int position) {
+        return mIds[row(position)];
+    }
+
+    /**
+     * @return sum of {@link #mixId(long)} of ids of rows. Same for same ids in
+     * any order, so rows deleted and replaced by others are found even when
+     * count doesn't change.
+     */
+    public long getIdChecksum() {
+        long checksum = 0;
+        for (int i = 0; i < mCount; i++) {
+            checksum += mixId(getId(i));
+        }
+        return checksum;
+    }
+
+    /**
+     * Spread bits of id, so ids close to each other don't cancel out in
+     * {@link #getIdChecksum()}.
+     */
+    public static long mixId(long id) {
+        id ^= id >>> 33;
+        id *= 0xff51afd7ed558ccdL;
+        id ^= id >>> 33;
+        id *= 0xc4ceb9fe1a85ec53L;
+        id ^= id >>> 33;
+        return id;
+    }
+
+    /**
+     * @return date added of row, in seconds.
+     */
+    public long getDateAdded(int position) {
+        return mDateAdded[row(position)];
+    }
+
+    /**
+     * @return {@link MediaItem#PHOTO} or {@link MediaItem#VIDEO}
+     */
+    public int getType(int position) {
+        return mTypes[row(position)];
+    }
+
+    /**
+     * @return content uri of row.
+     */
+    public Uri getUri(int position) {
+        int row = row(position);
+        return ContentUris.withAppendedId(getContentUri(mTypes[row]),
+                mIds[row]);
+    }
+
+    /**
+     * @return {@link MediaItem} of row, with details if loaded.
+     */
+    public MediaItem getItem(int position) {
+        int row = row(position);
+        MediaItem item = new MediaItem(mTypes[row], mIds[row]);
+        if (mDetails != null) {
+            mDetails.copyTo(row, item);
+        }
+        return item;
+    }
+
+    private int row(int position) {
+        return mRows == null ? position : mRows[position];
+    }
+
+    /**
+     * Rows of one media type, without query. Filtered index shares arrays
+     * with this one and can't be appended.
+     *
+     * @param mediaType {@link MediaItem#PHOTO} or {@link MediaItem#VIDEO}
+     * @return index of rows of media type.
+     */
+    public MediaIndex filter(int mediaType) {
+        int[] rows = new int[mCount];
+        int count = 0;
+        for (int position = 0; position < mCount; position++) {
+            int row = row(position);
+            if (mTypes[row] == mediaType) {
+                rows[count++] = row;
+            }
+        }
+        return new MediaIndex(mIds, mDateAdded, mTypes, mDetails, rows, count,
+                mComplete, mMaxId, mMaxDateModified);
+    }
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     *                  {@link #PHOTO_AND_VIDEO}
+     * @return base content uri of media type.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public static Uri getContentUri(int mediaType) {
+        switch (mediaType) {
+            case PHOTO_AND_VIDEO:
+                return Files.getContentUri("external");
+            case MediaItem.VIDEO:
+                return Video.Media.EXTERNAL_CONTENT_URI;
+            default:
+                return Images.Media.EXTERNAL_CONTENT_URI;
+        }
+    }
+
+    /**
+     * @param mediaType {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     *                  {@link #PHOTO_AND_VIDEO}
+     * @return selection that limits query of media type to photos and videos,
+     * null if not needed.
+     */
+    public static String getSelection(int mediaType) {
+        if (mediaType != PHOTO_AND_VIDEO)
+            return null;
+        return FileColumns.MEDIA_TYPE + " IN ("
+                + FileColumns.MEDIA_TYPE_IMAGE + ","
+                + FileColumns.MEDIA_TYPE_VIDEO + ")";
+    }
+
+    /**
+     * Copy rows of cursor after rows of this index. Cursor must have
+     * {@link MediaColumns#_ID} and {@link MediaColumns#DATE_ADDED} columns,
+     * details are copied if cursor has {@link MediaColumns#DATA} column. It is
+     * not closed.
+     *
+     * @param cursor    rows to copy.
+     * @param mediaType type of rows, {@link MediaItem#PHOTO} or
+     *                  {@link MediaItem#VIDEO}. With {@link #PHOTO_AND_VIDEO}
+     *                  type is read from {@link FileColumns#MEDIA_TYPE} column.
+     * @param complete  true if no row after rows of cursor.
+     * @return new index with rows of this index and of cursor.
+     * @throws IllegalStateException if this index is filtered.
+     */
+    public MediaIndex append(Cursor cursor, int mediaType, boolean complete) {
+        if (mRows != null)
+            throw new IllegalStateException("Filtered index can't be appended");
+        int rows = cursor.getCount();
+        int count = mCount + rows;
+        long[] ids = mIds;
+        long[] dateAdded = mDateAdded;
+        byte[] types = mTypes;
+        Details details = mDetails;
+        boolean rich = cursor.getColumnIndex(MediaColumns.DATA) >= 0;
+        if (count > ids.length) {
+            int capacity = Math.max(MIN_CAPACITY,
+                    Math.max(count, ids.length * 2));
+            ids = grow(ids, capacity);
+            dateAdded = grow(dateAdded, capacity);
+            byte[] newTypes = new byte[capacity];
+            System.arraycopy(types, 0, newTypes, 0, mCount);
+            types = newTypes;
+            if (details != null) {
+                details = details.grow(mCount, capacity);
+            }
+        }
+        if (rich && details == null) {
+            // rows before have no details, they stay empty.
+            details = new Details(ids.length);
+        }
+        Details.Columns columns = details == null ? null : details
+                .columnsOf(cursor);
+        int idColumn = cursor.getColumnIndex(MediaColumns._ID);
+        int dateColumn = cursor.getColumnIndex(MediaColumns.DATE_ADDED);
+        int typeColumn = mediaType == PHOTO_AND_VIDEO ? cursor
+                .getColumnIndex(FileColumns.MEDIA_TYPE) : -1;
+        int modifiedColumn = cursor.getColumnIndex(MediaColumns.DATE_MODIFIED);
+        long maxId = mMaxId;
+        long maxDateModified = mMaxDateModified;
+        int position = mCount;
+        cursor.moveToPosition(-1);
+        while (position < count && cursor.moveToNext()) {
+            ids[position] = cursor.getLong(idColumn);
+            dateAdded[position] = cursor.getLong(dateColumn);
+            if (typeColumn >= 0) {
+                types[position] = (byte) (cursor.getInt(typeColumn) == FileColumns.MEDIA_TYPE_VIDEO ? MediaItem.VIDEO
+                        : MediaItem.PHOTO);
+            } else {
+                types[position] = (byte) mediaType;
+            }
+            if (columns != null) {
+                details.read(cursor, columns, position);
+            }
+            maxId = Math.max(maxId, ids[position]);
+            if (modifiedColumn >= 0) {
+                maxDateModified = Math.max(maxDateModified,
+                        cursor.getLong(modifiedColumn));
+            }
+            position++;
+        }
+        return new MediaIndex(ids, dateAdded, types, details, null, position,
+                complete, maxId, maxDateModified);
+    }
+
+    /**
+     * Merge changed rows into rows of this index. Cursor must be in order of
+     * index, newest first.
+     *
+     * @param cursor    rows inserted or modified since this index was loaded.
+     *                  Rows of index with same id are replaced.
+     * @param liveIds   ids of rows of index that still exist, null if no row
+     *                  was deleted.
+     * @param mediaType see {@link #append(Cursor, int, boolean)}
+     * @return new index with changes applied.
+     * @throws IllegalStateException if this index is filtered.
+     */
+    public MediaIndex update(Cursor cursor, LongHashSet liveIds, int mediaType) {
+        if (mRows != null)
+            throw new IllegalStateException("Filtered index can't be updated");
+        MediaIndex delta = new MediaIndex().append(cursor, mediaType, true);
+        LongHashSet changedIds = new LongHashSet(delta.mCount);
+        for (int i = 0; i < delta.mCount; i++) {
+            changedIds.add(delta.mIds[i]);
+        }
+        int capacity = Math.max(MIN_CAPACITY, mCount + delta.mCount);
+        long[] ids = new long[capacity];
+        long[] dateAdded = new long[capacity];
+        byte[] types = new byte[capacity];
+        Details details = mDetails != null || delta.mDetails != null ? new Details(
+                capacity) : null;
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < mCount || j < delta.mCount) {
+            if (i < mCount
+                    && (changedIds.contains(mIds[i]) || (liveIds != null && !liveIds
+                    .contains(mIds[i])))) {
+                i++;
+                continue;
+            }
+            boolean fromDelta = i >= mCount
+                    || (j < delta.mCount && delta.isNewer(j, mDateAdded[i],
+                    mIds[i]));
+            MediaIndex from = fromDelta ? delta : this;
+            int row = fromDelta ? j++ : i++;
+            ids[count] = from.mIds[row];
+            dateAdded[count] = from.mDateAdded[row];
+            types[count] = from.mTypes[row];
+            if (details != null && from.mDetails != null) {
+                from.mDetails.copy(row, details, count);
+            }
+            count++;
+        }
+        return new MediaIndex(ids, dateAdded, types, details, null, count,
+                mComplete, Math.max(mMaxId, delta.mMaxId), Math.max(
+                mMaxDateModified, delta.mMaxDateModified));
+    }
+
+    private boolean isNewer(int row, long dateAdded, long id) {
+        return mDateAdded[row] > dateAdded
+                || (mDateAdded[row] == dateAdded && mIds[row] > id);
+    }
+
+    private long[] grow(long[] array, int capacity) {
+        long[] result = new long[capacity];
+        System.arraycopy(array, 0, result, 0, mCount);
+        return result;
+    }
+
+    /**
+     * Columns of rich projection, one array per column.
+     */
+    private static class Details {
+        final String[] paths;
+        final String[] mimeTypes;
+        final long[] sizes;
+        final long[] durations;
+        final int[] widths;
+        final int[] heights;
+        final int[] orientations;
+
+        Details(int capacity) {
+            paths = new String[capacity];
+            mimeTypes = new String[capacity];
+            sizes = new long[capacity];
+            durations = new long[capacity];
+            widths = new int[capacity];
+            heights = new int[capacity];
+            orientations = new int[capacity];
+        }
+
+        Details grow(int count, int capacity) {
+            Details result = new Details(capacity);
+            System.arraycopy(paths, 0, result.paths, 0, count);
+            System.arraycopy(mimeTypes, 0, result.mimeTypes, 0, count);
+            System.arraycopy(sizes, 0, result.sizes, 0, count);
+            System.arraycopy(durations, 0, result.durations, 0, count);
+            System.arraycopy(widths, 0, result.widths, 0, count);
+            System.arraycopy(heights, 0, result.heights, 0, count);
+            System.arraycopy(orientations, 0, result.orientations, 0, count);
+            return result;
+        }
+
+        void copy(int row, Details to, int toRow) {
+            to.paths[toRow] = paths[row];
+            to.mimeTypes[toRow] = mimeTypes[row];
+            to.sizes[toRow] = sizes[row];
+            to.durations[toRow] = durations[row];
+            to.widths[toRow] = widths[row];
+            to.heights[toRow] = heights[row];
+            to.orientations[toRow] = orientations[row];
+        }
+
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        Columns columnsOf(Cursor cursor) {
+            Columns columns = new Columns();
+            columns.path = cursor.getColumnIndex(MediaColumns.DATA);
+            columns.mimeType = cursor.getColumnIndex(MediaColumns.MIME_TYPE);
+            columns.size = cursor.getColumnIndex(MediaColumns.SIZE);
+            columns.duration = cursor
+                    .getColumnIndex(Video.VideoColumns.DURATION);
+            columns.width = cursor.getColumnIndex(MediaColumns.WIDTH);
+            columns.height = cursor.getColumnIndex(MediaColumns.HEIGHT);
+            columns.orientation = cursor
+                    .getColumnIndex(Images.ImageColumns.ORIENTATION);
+            return columns;
+        }
+
+        void read(Cursor cursor, Columns columns, int position) {
+            paths[position] = getString(cursor, columns.path);
+            mimeTypes[position] = getString(cursor, columns.mimeType);
+            sizes[position] = getLong(cursor, columns.size);
+            durations[position] = getLong(cursor, columns.duration);
+            widths[position] = (int) getLong(cursor, columns.width);
+            heights[position] = (int) getLong(cursor, columns.height);
+            orientations[position] = (int) getLong(cursor,
+                    columns.orientation);
+        }
+
+        void copyTo(int position, MediaItem item) {
+            item.setPathOrigin(paths[position]);
+            item.setMimeType(mimeTypes[position]);
+            item.setSize(sizes[position]);
+            item.setDuration(durations[position]);
+            item.setWidth(widths[position]);
+            item.setHeight(heights[position]);
+            item.setOrientation(orientations[position]);
+        }
+
+        private static String getString(Cursor cursor, int column) {
+            return column < 0 ? null : cursor.getString(column);
+        }
+
+        private static long getLong(Cursor cursor, int column) {
+            return column < 0 ? 0 : cursor.getLong(column);
+        }
+
+        /**
+         * Index of each column in cursor, -1 if not queried.
+         */
+        static class Columns {
+            int path;
+            int mimeType;
+            int size;
+            int duration;
+            int width;
+            int height;
+            int orientation;
+        }
+    }
+}
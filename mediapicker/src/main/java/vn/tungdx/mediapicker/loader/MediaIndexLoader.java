@@ -0,0 +1,335 @@
+package vn.tungdx.mediapicker.loader;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.provider.MediaStore.MediaColumns;
+import android.support.v4.content.AsyncTaskLoader;
+import android.text.TextUtils;
+
+import vn.tungdx.mediapicker.MediaItem;
+import vn.tungdx.mediapicker.utils.LongHashSet;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Load media of {@link android.provider.MediaStore} into a {@link MediaIndex},
+ * newest first. Rows are copied on background thread and cursor is closed
+ * right after, so no CursorWindow is kept while grid is shown.
+ * <p/>
+ * With a page size, media are loaded page by page: first page is delivered as
+ * soon as it's queried, so time to first content doesn't depend on size of
+ * library. Next pages are loaded by {@link #loadNextPage()}. Pages are queried
+ * by keyset on ({@link MediaColumns#DATE_ADDED}, {@link MediaColumns#_ID}), not
+ * by offset, so each page costs the same however deep the grid is scrolled.
+ * <p/>
+ * With {@link MediaIndex#PHOTO_AND_VIDEO} photos and videos are loaded by one
+ * query on {@link android.provider.MediaStore.Files} (API 11+), see
+ * {@link MediaIndex#filter(int)}.
+ * <p/>
+ * When media change, loaded rows are not queried again. Changes are collected
+ * for {@link #CHANGE_DELAY} ms, then rows inserted or modified after snapshot
+ * of index ({@link MediaIndex#getMaxId()},
+ * {@link MediaIndex#getMaxDateModified()}) are queried and merged into it, and
+ * deleted rows are found by ids of loaded rows only
+ * ({@link MediaIndex#getIdChecksum()}).
+ */
+public class MediaIndexLoader extends AsyncTaskLoader<MediaIndex> {
+    public static final int DEFAULT_PAGE_SIZE = 240;
+    /**
+     * Time to collect changes of media before they are loaded, in ms.
+     */
+    public static final long CHANGE_DELAY = 500;
+    private static final String[] ID_PROJECTION = {MediaColumns._ID};
+    private static final String CHANGED_SELECTION = MediaColumns._ID
+            + " > ? OR " + MediaColumns.DATE_MODIFIED + " >= ?";
+    private static final String ORDER = MediaColumns.DATE_ADDED + " DESC, "
+            + MediaColumns._ID + " DESC";
+    private static final String KEYSET_SELECTION = MediaColumns.DATE_ADDED
+            + " < ? OR (" + MediaColumns.DATE_ADDED + " = ? AND "
+            + MediaColumns._ID + " < ?)";
+    // Build.VERSION_CODES.R: provider rejects LIMIT in sort order for apps
+    // targeting it, but reads limit query parameter of uri.
+    private static final int LIMIT_PARAMETER_SDK = 30;
+    private static final String LIMIT_PARAMETER = "limit";
+
+    private final ContentObserver mObserver;
+    private final Handler mHandler;
+    private final Runnable mChangeRunnable;
+    private final int mMediaType;
+    private final Uri mUri;
+    private final Uri[] mObservedUris;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final int mPageSize;
+    // index delivered, read by background thread to query next page.
+    private volatile MediaIndex mIndex;
+    // content changed, next load applies changes to index.
+    private volatile boolean mChanged;
+    // load running applies changes, they are lost if it's canceled.
+    private volatile boolean mUpdating;
+    private boolean mLoading;
+    private boolean mObserving;
+
+    /**
+     * @param context
+     * @param mediaType     {@link MediaItem#PHOTO}, {@link MediaItem#VIDEO} or
+     *                      {@link MediaIndex#PHOTO_AND_VIDEO}
+     * @param selection     can be null.
+     * @param selectionArgs can be null.
+     * @param pageSize      number of rows per page, 0 to load all rows at once.
+     * @param rich          true to load details of media with index, see
+     *                      {@link MediaIndex#getProjection(int, boolean)}
+     */
+    public MediaIndexLoader(Context context, int mediaType, String selection,
+                            String[] selectionArgs, int pageSize, boolean rich) {
+        super(context);
+        mMediaType = mediaType;
+        mUri = MediaIndex.getContentUri(mediaType);
+        mProjection = MediaIndex.getProjection(mediaType, rich);
+        mSelection = and(MediaIndex.getSelection(mediaType), selection);
+        if (mediaType == MediaIndex.PHOTO_AND_VIDEO) {
+            // files uri isn't notified when photos or videos change.
+            mObservedUris = new Uri[]{
+                    MediaIndex.getContentUri(MediaItem.PHOTO),
+                    MediaIndex.getContentUri(MediaItem.VIDEO)};
+        } else {
+            mObservedUris = new Uri[]{mUri};
+        }
+        mSelectionArgs = selectionArgs;
+        mPageSize = pageSize;
+        mHandler = new Handler();
+        mChangeRunnable = new Runnable() {
+            @Override
+            public void run() {
+                onContentChanged();
+            }
+        };
+        mObserver = new ContentObserver(mHandler) {
+            @Override
+            public boolean deliverSelfNotifications() {
+                return true;
+            }
+
+            @Override
+            public void onChange(boolean selfChange) {
+                mChanged = true;
+                // a burst of changes is loaded once.
+                mHandler.removeCallbacks(mChangeRunnable);
+                mHandler.postDelayed(mChangeRunnable, CHANGE_DELAY);
+            }
+        };
+    }
+
+    /**
+     * Load next page if there is more rows and nothing is loading. Must be
+     * called from main thread.
+     */
+    public void loadNextPage() {
+        MediaIndex index = mIndex;
+        if (index == null || index.isComplete() || mLoading || !isStarted())
+            return;
+        forceLoad();
+    }
+
+    @Override
+    protected void onForceLoad() {
+        mLoading = true;
+        super.onForceLoad();
+    }
+
+    @Override
+    public MediaIndex loadInBackground() {
+        MediaIndex previous = mIndex;
+        boolean changed = mChanged;
+        mChanged = false;
+        mUpdating = previous != null && changed;
+        if (previous != null && changed)
+            return update(previous);
+        if (previous != null && previous.isComplete())
+            return previous;
+        Cursor cursor = query(previous);
+        if (cursor == null)
+            return previous;
+        try {
+            boolean complete = mPageSize <= 0
+                    || cursor.getCount() < mPageSize;
+            MediaIndex index = previous == null ? new MediaIndex() : previous;
+            return index.append(cursor, mMediaType, complete);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Cursor query(MediaIndex previous) {
+        String selection = mSelection;
+        String[] selectionArgs = mSelectionArgs;
+        if (previous != null && previous.getCount() > 0) {
+            selection = and(selection, KEYSET_SELECTION);
+            selectionArgs = concat(selectionArgs, getKeysetArgs(previous));
+        }
+        Uri uri = mUri;
+        String order = ORDER;
+        if (mPageSize > 0) {
+            if (Build.VERSION.SDK_INT >= LIMIT_PARAMETER_SDK) {
+                uri = mUri.buildUpon().appendQueryParameter(LIMIT_PARAMETER,
+                        String.valueOf(mPageSize)).build();
+            } else {
+                // older provider appends sort order to query, so LIMIT can be
+                // passed with it.
+                order += " LIMIT " + mPageSize;
+            }
+        }
+        // a provider ignoring limit returns all rows: index is complete after
+        // next page, which is empty.
+        return getContext().getContentResolver().query(uri, mProjection,
+                selection, selectionArgs, order);
+    }
+
+    /**
+     * Apply rows inserted, modified or deleted since index was loaded. Only
+     * range of rows loaded is queried, rows after it come with next pages.
+     */
+    private MediaIndex update(MediaIndex previous) {
+        String selection = mSelection;
+        String[] selectionArgs = mSelectionArgs;
+        if (!previous.isComplete() && previous.getCount() > 0) {
+            selection = and(selection, "NOT (" + KEYSET_SELECTION + ")");
+            selectionArgs = concat(selectionArgs, getKeysetArgs(previous));
+        }
+        ContentResolver resolver = getContext().getContentResolver();
+        String maxId = String.valueOf(previous.getMaxId());
+        // ids of range loaded, only kept when they differ from ids of index.
+        Cursor cursor = resolver.query(mUri, ID_PROJECTION,
+                and(selection, MediaColumns._ID + " <= ?"),
+                concat(selectionArgs, new String[]{maxId}), null);
+        if (cursor == null)
+            return previous;
+        LongHashSet liveIds = null;
+        try {
+            long checksum = 0;
+            while (cursor.moveToNext()) {
+                checksum += MediaIndex.mixId(cursor.getLong(0));
+            }
+            if (cursor.getCount() != previous.getCount()
+                    || checksum != previous.getIdChecksum()) {
+                liveIds = new LongHashSet(cursor.getCount());
+                cursor.moveToPosition(-1);
+                while (cursor.moveToNext()) {
+                    liveIds.add(cursor.getLong(0));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        // date modified is in seconds: rows modified in same second as latest
+        // row loaded are queried again and replace their rows in index.
+        cursor = resolver.query(mUri, mProjection,
+                and(selection, CHANGED_SELECTION),
+                concat(selectionArgs, new String[]{maxId,
+                        String.valueOf(previous.getMaxDateModified())}),
+                ORDER);
+        if (cursor == null)
+            return previous;
+        try {
+            if (liveIds == null && cursor.getCount() == 0)
+                return previous;
+            return previous.update(cursor, liveIds, mMediaType);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String[] getKeysetArgs(MediaIndex index) {
+        int last = index.getCount() - 1;
+        String date = String.valueOf(index.getDateAdded(last));
+        return new String[]{date, date, String.valueOf(index.getId(last))};
+    }
+
+    @Override
+    public void deliverResult(MediaIndex index) {
+        if (isReset())
+            return;
+        mIndex = index;
+        mLoading = false;
+        mUpdating = false;
+        if (isStarted()) {
+            super.deliverResult(index);
+        }
+    }
+
+    @Override
+    public void onCanceled(MediaIndex index) {
+        if (mUpdating && !isReset()) {
+            // changes weren't applied: load them now if started, else when
+            // started again.
+            mChanged = true;
+            onContentChanged();
+        }
+        mUpdating = false;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            for (Uri uri : mObservedUris) {
+                getContext().getContentResolver().registerContentObserver(uri,
+                        true, mObserver);
+            }
+            mObserving = true;
+        }
+        if (mIndex != null) {
+            deliverResult(mIndex);
+        }
+        if (takeContentChanged() || mIndex == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // mLoading stays set: load is restarted by onStartLoading().
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mHandler.removeCallbacks(mChangeRunnable);
+        mChanged = false;
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(
+                    mObserver);
+            mObserving = false;
+        }
+        mIndex = null;
+        mLoading = false;
+    }
+
+    private static String and(String first, String second) {
+        if (TextUtils.isEmpty(first))
+            return second;
+        if (TextUtils.isEmpty(second))
+            return first;
+        return "(" + first + ") AND (" + second + ")";
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
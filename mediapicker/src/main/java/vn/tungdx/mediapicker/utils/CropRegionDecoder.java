@@ -0,0 +1,135 @@
+package vn.tungdx.mediapicker.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Decode cropped photo from original file instead of from bitmap displayed for
+ * cropping. Crop rectangle is mapped back to coordinates of file and only that
+ * region is decoded by {@link BitmapRegionDecoder} (API 10+), so memory used
+ * depends on size of output, not size of file.
+ */
+public class CropRegionDecoder {
+    private static final String TAG = "CropRegionDecoder";
+
+    private CropRegionDecoder() {
+    }
+
+    /**
+     * Map crop rectangle on displayed bitmap to region of original file.
+     *
+     * @param crop         crop rectangle, in coordinates of displayed bitmap.
+     * @param degrees      clockwise rotation from decoded bitmap to displayed
+     *                     bitmap, multiple of 90.
+     * @param bitmapWidth  width of decoded bitmap, before rotation.
+     * @param bitmapHeight height of decoded bitmap, before rotation.
+     * @param sourceWidth  width of original file.
+     * @param sourceHeight height of original file.
+     * @return region of original file, null if empty.
+     */
+    public static Rect mapToSource(RectF crop, int degrees, int bitmapWidth,
+                                   int bitmapHeight, int sourceWidth, int sourceHeight) {
+        if (crop == null || bitmapWidth <= 0 || bitmapHeight <= 0)
+            return null;
+        degrees = normalize(degrees);
+        boolean swap = degrees == 90 || degrees == 270;
+        Matrix matrix = new Matrix();
+        // undo rotation, then move result back to origin.
+        matrix.setRotate(-degrees);
+        RectF bounds = new RectF(0, 0, swap ? bitmapHeight : bitmapWidth,
+                swap ? bitmapWidth : bitmapHeight);
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        matrix.postScale(sourceWidth / (float) bitmapWidth, sourceHeight
+                / (float) bitmapHeight);
+        RectF mapped = new RectF();
+        matrix.mapRect(mapped, crop);
+        Rect region = new Rect();
+        mapped.round(region);
+        if (!region.intersect(0, 0, sourceWidth, sourceHeight))
+            return null;
+        return region;
+    }
+
+    /**
+     * Decode region of file, rotated as displayed. Blocking, call on background
+     * thread.
+     *
+     * @param path    path of original file.
+     * @param region  region of file, see
+     *                {@link #mapToSource(RectF, int, int, int, int, int)}.
+     * @param degrees clockwise rotation to apply, multiple of 90.
+     * @param maxSize max width and height of result, 0 if no limit.
+     * @return cropped bitmap, null if file can't be decoded by region.
+     */
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    public static Bitmap decode(String path, Rect region, int degrees,
+                                int maxSize) {
+        BitmapRegionDecoder decoder = null;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(path, false);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = calculateInSampleSize(region.width(),
+                    region.height(), maxSize);
+            Bitmap bitmap = decoder.decodeRegion(region, options);
+            return rotate(bitmap, normalize(degrees));
+        } catch (IOException e) {
+            Log.w(TAG, "Can't decode region of " + path, e);
+            return null;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Can't decode region of " + path, e);
+            return null;
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Not enough memory to decode region of " + path, e);
+            return null;
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+        }
+    }
+
+    /**
+     * Subsample region larger than maxSize, and region whose pixels (twice,
+     * when rotated) would not fit in quarter of heap.
+     */
+    private static int calculateInSampleSize(int width, int height, int maxSize) {
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        int inSampleSize = 1;
+        while ((maxSize > 0 && Math.max(width, height) / inSampleSize > maxSize)
+                || (long) (width / inSampleSize) * (height / inSampleSize) * 8 > budget) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private static Bitmap rotate(Bitmap bitmap, int degrees) {
+        if (bitmap == null || degrees == 0)
+            return bitmap;
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(),
+                bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
+    private static int normalize(int degrees) {
+        return (degrees % 360 + 360) % 360;
+    }
+}
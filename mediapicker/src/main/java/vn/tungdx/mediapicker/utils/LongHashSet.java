@@ -0,0 +1,67 @@
+package vn.tungdx.mediapicker.utils;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Set of primitive long values, a {@link LongIntMap} whose values are
+ * ignored. Add, remove and contains are O(1) and never box values.
+ * <p/>
+ * Not thread safe.
+ */
+public class LongHashSet {
+    private static final int PRESENT = 0;
+    private static final int MISSING = -1;
+
+    private final LongIntMap mMap;
+
+    public LongHashSet() {
+        mMap = new LongIntMap();
+    }
+
+    /**
+     * @param expectedSize number of keys that can be added before set grows.
+     */
+    public LongHashSet(int expectedSize) {
+        mMap = new LongIntMap(expectedSize);
+    }
+
+    /**
+     * @param key
+     * @return true if set contains key.
+     */
+    public boolean contains(long key) {
+        return mMap.containsKey(key);
+    }
+
+    /**
+     * @param key
+     * @return true if key added, false if set already contains it.
+     */
+    public boolean add(long key) {
+        int size = mMap.size();
+        mMap.put(key, PRESENT);
+        return mMap.size() != size;
+    }
+
+    /**
+     * @param key
+     * @return true if key removed, false if set did not contain it.
+     */
+    public boolean remove(long key) {
+        return mMap.remove(key, MISSING) != MISSING;
+    }
+
+    public void clear() {
+        mMap.clear();
+    }
+
+    public int size() {
+        return mMap.size();
+    }
+
+    public boolean isEmpty() {
+        return mMap.size() == 0;
+    }
+}
@@ -0,0 +1,184 @@
+package vn.tungdx.mediapicker.utils;
+
+import java.util.Arrays;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Map of primitive long keys to int values. Open addressing with linear
+ * probing, so get, put and remove are O(1) and never box keys or values.
+ * <p/>
+ * Not thread safe.
+ */
+public class LongIntMap {
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mMask;
+    // number of keys in mKeys, not counting EMPTY key.
+    private int mSize;
+    // EMPTY marks free slot, so the EMPTY key itself is kept aside.
+    private boolean mHasEmptyKey;
+    private int mEmptyKeyValue;
+
+    public LongIntMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize number of keys that can be put before map grows.
+     */
+    public LongIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY)
+            return mHasEmptyKey;
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key
+     * @param missing value returned if map doesn't contain key.
+     * @return value of key.
+     */
+    public int get(long key, int missing) {
+        if (key == EMPTY)
+            return mHasEmptyKey ? mEmptyKeyValue : missing;
+        int i = indexOf(key);
+        return i < 0 ? missing : mValues[i];
+    }
+
+    /**
+     * Set value of key, replacing value before if any.
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            mHasEmptyKey = true;
+            mEmptyKeyValue = value;
+            return;
+        }
+        int i = hash(key) & mMask;
+        while (true) {
+            long k = mKeys[i];
+            if (k == EMPTY)
+                break;
+            if (k == key) {
+                mValues[i] = value;
+                return;
+            }
+            i = (i + 1) & mMask;
+        }
+        mKeys[i] = key;
+        mValues[i] = value;
+        // keep load factor at most 1/2, so probe sequences stay short.
+        if (++mSize > mKeys.length / 2) {
+            rehash(mKeys.length * 2);
+        }
+    }
+
+    /**
+     * @param key
+     * @param missing value returned if map doesn't contain key.
+     * @return value of key removed.
+     */
+    public int remove(long key, int missing) {
+        if (key == EMPTY) {
+            if (!mHasEmptyKey)
+                return missing;
+            mHasEmptyKey = false;
+            return mEmptyKeyValue;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return missing;
+        int value = mValues[i];
+        long[] keys = mKeys;
+        // shift following keys of the probe sequence back, instead of
+        // leaving a tombstone.
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mMask;
+            long k = keys[j];
+            if (k == EMPTY)
+                break;
+            int ideal = hash(k) & mMask;
+            if (((j - ideal) & mMask) >= ((j - gap) & mMask)) {
+                keys[gap] = k;
+                mValues[gap] = mValues[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        mSize--;
+        return value;
+    }
+
+    public void clear() {
+        if (mSize > 0) {
+            Arrays.fill(mKeys, EMPTY);
+            mSize = 0;
+        }
+        mHasEmptyKey = false;
+    }
+
+    public int size() {
+        return mHasEmptyKey ? mSize + 1 : mSize;
+    }
+
+    private int indexOf(long key) {
+        long[] keys = mKeys;
+        int i = hash(key) & mMask;
+        while (true) {
+            long k = keys[i];
+            if (k == EMPTY)
+                return -1;
+            if (k == key)
+                return i;
+            i = (i + 1) & mMask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        int[] oldValues = mValues;
+        allocate(capacity);
+        for (int n = 0; n < oldKeys.length; n++) {
+            long k = oldKeys[n];
+            if (k == EMPTY)
+                continue;
+            int i = hash(k) & mMask;
+            while (mKeys[i] != EMPTY) {
+                i = (i + 1) & mMask;
+            }
+            mKeys[i] = k;
+            mValues[i] = oldValues[n];
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        // spread bits: ids are sequential, low bits alone cluster badly.
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
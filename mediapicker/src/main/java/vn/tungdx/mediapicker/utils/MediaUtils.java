@@ -1,7 +1,9 @@
 package vn.tungdx.mediapicker.utils;
 
+import android.annotation.TargetApi;
 import android.content.ContentProvider;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
@@ -9,19 +11,26 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.media.MediaPlayer;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Images;
 import android.provider.MediaStore.MediaColumns;
 import android.provider.MediaStore.Video;
+import android.support.v4.util.LongSparseArray;
 import android.util.Log;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
+import vn.tungdx.mediapicker.MediaItem;
+import vn.tungdx.mediapicker.loader.MediaIndex;
+
 /**
  * @author TUNGDX
  */
@@ -32,6 +41,8 @@ import java.util.Locale;
 public class MediaUtils {
     public static final String[] PROJECT_PHOTO = {MediaColumns._ID};
     public static final String[] PROJECT_VIDEO = {MediaColumns._ID};
+    // max number of ids in one query, SQLite allows 999 arguments.
+    private static final int MAX_QUERY_ARGS = 500;
 
     public static Uri getPhotoUri(Cursor cursor) {
         return getMediaUri(cursor, Images.Media.EXTERNAL_CONTENT_URI);
@@ -42,8 +53,20 @@ public class MediaUtils {
     }
 
     public static Uri getMediaUri(Cursor cursor, Uri uri) {
-        String id = cursor.getString(cursor.getColumnIndex(MediaColumns._ID));
-        return Uri.withAppendedPath(uri, id);
+        return getMediaUri(cursor, cursor.getColumnIndex(MediaColumns._ID), uri);
+    }
+
+    /**
+     * Same as {@link #getMediaUri(Cursor, Uri)} with index of {@link MediaColumns#_ID}
+     * column looked up before, so it can be reused for every row.
+     *
+     * @param cursor
+     * @param idColumn index of {@link MediaColumns#_ID} column in cursor.
+     * @param uri      base content uri of media.
+     * @return
+     */
+    public static Uri getMediaUri(Cursor cursor, int idColumn, Uri uri) {
+        return ContentUris.withAppendedId(uri, cursor.getLong(idColumn));
     }
 
     /**
@@ -155,20 +178,7 @@ public class MediaUtils {
      */
     public static String getRealImagePathFromURI(ContentResolver contentResolver,
                                                  Uri contentURI) {
-        Cursor cursor = contentResolver.query(contentURI, null, null, null,
-                null);
-        if (cursor == null)
-            return contentURI.getPath();
-        else {
-            cursor.moveToFirst();
-            int idx = cursor
-                    .getColumnIndex(Images.ImageColumns.DATA);
-            try {
-                return cursor.getString(idx);
-            } catch (Exception exception) {
-                return null;
-            }
-        }
+        return getRealPathFromURI(contentResolver, contentURI);
     }
 
     /**
@@ -180,21 +190,125 @@ public class MediaUtils {
      */
     public static String getRealVideoPathFromURI(ContentResolver contentResolver,
                                                  Uri contentURI) {
-        Cursor cursor = contentResolver.query(contentURI, null, null, null,
-                null);
+        return getRealPathFromURI(contentResolver, contentURI);
+    }
+
+    private static String getRealPathFromURI(ContentResolver contentResolver,
+                                             Uri contentURI) {
+        Cursor cursor;
+        try {
+            cursor = contentResolver.query(contentURI,
+                    new String[]{MediaColumns.DATA}, null, null, null);
+        } catch (RuntimeException e) {
+            // provider other than MediaStore (ex: FileProvider) has no DATA
+            // column and rejects projection.
+            Log.w("MediaUtils", "Can not query path of " + contentURI, e);
+            return null;
+        }
         if (cursor == null)
             return contentURI.getPath();
-        else {
-            cursor.moveToFirst();
-            int idx = cursor.getColumnIndex(Video.VideoColumns.DATA);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } catch (RuntimeException e) {
+            Log.w("MediaUtils", "Can not read path of " + contentURI, e);
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Resolve path of origin of items in one query per media type, instead of
+     * one query per item. Paths are set by
+     * {@link MediaItem#setPathOrigin(String)}, items whose origin is not in
+     * {@link MediaStore} are skipped.
+     *
+     * @param contentResolver
+     * @param items           items to resolve.
+     * @param details         true to also set size, mime type, width, height
+     *                        and duration or orientation.
+     */
+    public static void resolvePaths(ContentResolver contentResolver,
+                                    List<MediaItem> items, boolean details) {
+        resolvePaths(contentResolver, items, MediaItem.PHOTO, details);
+        resolvePaths(contentResolver, items, MediaItem.VIDEO, details);
+    }
+
+    private static void resolvePaths(ContentResolver contentResolver,
+                                     List<MediaItem> items, int mediaType, boolean details) {
+        LongSparseArray<MediaItem> pending = new LongSparseArray<MediaItem>();
+        for (MediaItem item : items) {
+            long id = item.getMediaStoreId();
+            if (item.getType() == mediaType && id >= 0) {
+                pending.put(id, item);
+            }
+        }
+        String[] projection = getResolveProjection(mediaType, details);
+        Uri uri = MediaIndex.getContentUri(mediaType);
+        // keep number of arguments under limit of SQLite.
+        for (int start = 0; start < pending.size(); start += MAX_QUERY_ARGS) {
+            int end = Math.min(start + MAX_QUERY_ARGS, pending.size());
+            StringBuilder selection = new StringBuilder(MediaColumns._ID)
+                    .append(" IN (");
+            String[] selectionArgs = new String[end - start];
+            for (int i = start; i < end; i++) {
+                selection.append(i == start ? "?" : ",?");
+                selectionArgs[i - start] = String.valueOf(pending.keyAt(i));
+            }
+            selection.append(')');
+            Cursor cursor = contentResolver.query(uri, projection,
+                    selection.toString(), selectionArgs, null);
+            if (cursor == null)
+                continue;
             try {
-                return cursor.getString(idx);
-            } catch (Exception exception) {
-                return null;
+                while (cursor.moveToNext()) {
+                    MediaItem item = pending.get(cursor.getLong(0));
+                    if (item == null)
+                        continue;
+                    item.setPathOrigin(cursor.getString(1));
+                    if (details) {
+                        readDetails(cursor, item);
+                    }
+                }
+            } finally {
+                cursor.close();
             }
         }
     }
 
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static String[] getResolveProjection(int mediaType, boolean details) {
+        if (!details)
+            return new String[]{MediaColumns._ID, MediaColumns.DATA};
+        List<String> columns = new ArrayList<String>();
+        columns.add(MediaColumns._ID);
+        columns.add(MediaColumns.DATA);
+        columns.add(MediaColumns.SIZE);
+        columns.add(MediaColumns.MIME_TYPE);
+        columns.add(mediaType == MediaItem.VIDEO ? Video.VideoColumns.DURATION
+                : Images.ImageColumns.ORIENTATION);
+        // columns exist since Jelly Bean.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            columns.add(MediaColumns.WIDTH);
+            columns.add(MediaColumns.HEIGHT);
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    private static void readDetails(Cursor cursor, MediaItem item) {
+        item.setSize(cursor.getLong(2));
+        item.setMimeType(cursor.getString(3));
+        if (item.isVideo()) {
+            item.setDuration(cursor.getLong(4));
+        } else {
+            item.setOrientation(cursor.getInt(4));
+        }
+        if (cursor.getColumnCount() > 6) {
+            item.setWidth(cursor.getInt(5));
+            item.setHeight(cursor.getInt(6));
+        }
+    }
+
     /**
      * Add file photo to gallery after capture from camera or downloaded.
      *
@@ -250,10 +364,14 @@ public class MediaUtils {
         Cursor cursor = MediaStore.Video.query(context.getContentResolver(),
                 uri, new String[]{MediaStore.Video.VideoColumns.DURATION});
         if (cursor != null) {
-            cursor.moveToFirst();
-            duration = cursor.getLong(cursor
-                    .getColumnIndex(MediaStore.Video.VideoColumns.DURATION));
-            cursor.close();
+            try {
+                if (cursor.moveToFirst()) {
+                    duration = cursor.getLong(cursor
+                            .getColumnIndex(MediaStore.Video.VideoColumns.DURATION));
+                }
+            } finally {
+                cursor.close();
+            }
         }
         return duration;
     }
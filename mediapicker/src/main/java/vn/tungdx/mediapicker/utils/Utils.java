@@ -7,6 +7,7 @@ import android.content.res.TypedArray;
 import android.os.Build;
 import android.os.Environment;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 
@@ -72,4 +73,19 @@ public class Utils {
         String prefix = String.valueOf(System.currentTimeMillis());
         return File.createTempFile(prefix, null, folder);
     }
+
+    /**
+     * Close stream, ignore error.
+     *
+     * @param closeable can be null.
+     */
+    public static void closeSilently(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
 }
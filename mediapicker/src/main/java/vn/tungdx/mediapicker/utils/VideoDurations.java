@@ -0,0 +1,135 @@
+package vn.tungdx.mediapicker.utils;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore.MediaColumns;
+import android.provider.MediaStore.Video;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+import android.util.Log;
+
+import vn.tungdx.mediapicker.MediaItem;
+import vn.tungdx.mediapicker.loader.MediaIndex;
+
+/**
+ * @author TUNGDX
+ */
+
+/**
+ * Resolve duration of video, cheapest source first: duration loaded with grid,
+ * {@link Video.VideoColumns#DURATION} column, duration read before (cached by
+ * id and {@link MediaColumns#DATE_MODIFIED}), then file itself by
+ * {@link MediaMetadataRetriever} (API 10+, else {@link android.media.MediaPlayer}).
+ * <p/>
+ * Reading file is blocking, call {@link #getDuration(Context, MediaItem)} on
+ * background thread.
+ */
+public class VideoDurations {
+    private static final String TAG = "VideoDurations";
+    private static final int CACHE_SIZE = 64;
+    private static final String[] PROJECTION = {Video.VideoColumns.DURATION,
+            MediaColumns.DATE_MODIFIED, MediaColumns.DATA};
+
+    // key is id and date modified, so edited video is read again.
+    private static final LruCache<String, Long> sCache = new LruCache<String, Long>(
+            CACHE_SIZE);
+
+    private VideoDurations() {
+    }
+
+    /**
+     * @param context
+     * @param video
+     * @return duration of video, in milliseconds. 0 if not found.
+     */
+    public static long getDuration(Context context, MediaItem video) {
+        if (video.getDuration() > 0)
+            return video.getDuration();
+        long id = video.getMediaStoreId();
+        String path = null;
+        String key = null;
+        if (id >= 0) {
+            Cursor cursor = context.getContentResolver().query(
+                    MediaIndex.getContentUri(MediaItem.VIDEO), PROJECTION,
+                    MediaColumns._ID + " = ?",
+                    new String[]{String.valueOf(id)}, null);
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToFirst()) {
+                        long duration = cursor.getLong(0);
+                        if (duration > 0)
+                            return duration;
+                        key = id + "_" + cursor.getLong(1);
+                        path = cursor.getString(2);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            if (key != null) {
+                Long duration = sCache.get(key);
+                if (duration != null)
+                    return duration;
+            }
+        }
+        if (path == null) {
+            path = video.getPathOrigin(context);
+        }
+        long duration = readDuration(context, path, video.getUriOrigin());
+        if (key != null && duration > 0) {
+            sCache.put(key, duration);
+        }
+        return duration;
+    }
+
+    private static long readDuration(Context context, String path, Uri uri) {
+        long duration = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD_MR1) {
+            duration = retrieveDuration(context, path, uri);
+        }
+        if (duration == 0 && !TextUtils.isEmpty(path)) {
+            // Should get duration by path before uri because some devices
+            // can't get duration by uri or not exactly. Ex: Asus Memo Pad8
+            duration = MediaUtils.getDuration(context, path);
+        }
+        if (duration == 0 && uri != null) {
+            // Some time can not get duration by path after record video. (It's
+            // usually happen in HTC devices 2.3, maybe others)
+            duration = MediaUtils.getDuration(context, uri);
+        }
+        return duration;
+    }
+
+    /**
+     * Read duration from container header, without preparing a player.
+     */
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    private static long retrieveDuration(Context context, String path, Uri uri) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            if (!TextUtils.isEmpty(path)) {
+                retriever.setDataSource(path);
+            } else if (uri != null) {
+                retriever.setDataSource(context, uri);
+            } else {
+                return 0;
+            }
+            String duration = retriever
+                    .extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration == null ? 0 : Long.parseLong(duration);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Can't retrieve duration of " + path, e);
+            return 0;
+        } finally {
+            try {
+                retriever.release();
+            } catch (RuntimeException e) {
+                // ignore
+            }
+        }
+    }
+}